@@ -0,0 +1,97 @@
+package org.cis120.checkers;
+
+/**
+ * This class holds the fixed set of positions the benchmarks run against.
+ *
+ * Each position is written as eight rows of piece codes (the same codes as
+ * CheckersModel.getPiece), with black to move. They
+ * are kept here as literals rather than generated, so benchmark numbers
+ * stay comparable from one change to the next.
+ */
+public class BenchmarkPositions {
+
+    public static final String[] NAMES = {
+        "start", "opening", "midgame", "multiJump", "kings", "blocked"
+    };
+
+    private static final String[][] ROWS = {
+        // start: the position from reset()
+        {"01010101",
+         "10101010",
+         "01010101",
+         "00000000",
+         "00000000",
+         "20202020",
+         "02020202",
+         "20202020"},
+        // opening: a few moves in, no captures yet
+        {"01010101",
+         "10101010",
+         "00010101",
+         "10000000",
+         "00020000",
+         "20002020",
+         "02020202",
+         "20202020"},
+        // midgame: both sides have lost pieces and black has a king
+        {"01000100",
+         "10001010",
+         "00010001",
+         "00000000",
+         "00020100",
+         "20000020",
+         "02000002",
+         "30202000"},
+        // multiJump: the black king at 7,5 has a triple jump
+        {"00000000",
+         "01000000",
+         "00002000",
+         "01000000",
+         "00202000",
+         "00100010",
+         "01002000",
+         "00000300"},
+        // kings: a king endgame with open lines
+        {"00000000",
+         "00000000",
+         "00030000",
+         "00000000",
+         "00000400",
+         "00000000",
+         "03000000",
+         "00000040"},
+        // blocked: black has no legal moves
+        {"00000000",
+         "00000000",
+         "00000000",
+         "00000000",
+         "00000000",
+         "00000000",
+         "10000000",
+         "02000000"}
+    };
+
+    /**
+     * Returns a new model set up at the named position.
+     */
+    public static CheckersModel load(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) {
+                return load(i);
+            }
+        }
+        throw new IllegalArgumentException("Unknown benchmark position: " + name);
+    }
+
+    private static CheckersModel load(int index) {
+        int[][] board = new int[8][8];
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                board[row][col] = ROWS[index][row].charAt(col) - '0';
+            }
+        }
+        CheckersModel cm = new CheckersModel();
+        cm.setBoard(board);
+        return cm;
+    }
+}
@@ -0,0 +1,165 @@
+package org.cis120.checkers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the CheckersModel methods on the hot path of a game or
+ * a search, run against the positions in BenchmarkPositions.
+ *
+ * Methods that change the position are measured together with the undo
+ * calls that put it back, so every invocation starts from the same position.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = {"-Xms1g", "-Xmx1g", "-XX:+UseParallelGC"})
+public class ModelBenchmark {
+
+    @State(Scope.Thread)
+    public static class PositionState {
+        @Param({"start", "opening", "midgame", "multiJump", "kings", "blocked"})
+        public String position;
+
+        CheckersModel cm;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            cm = BenchmarkPositions.load(position);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SimpleMoveState {
+        @Param({"start", "opening", "midgame", "kings"})
+        public String position;
+
+        CheckersModel cm;
+        int startRow, startCol, endRow, endCol;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            cm = BenchmarkPositions.load(position);
+
+            // the last move listed is always a simple move when there is one
+            int[] moves = new int[CheckersModel.MAX_MOVES];
+            int move = moves[cm.generateMoves(moves) - 1];
+            int from = CheckersModel.moveFrom(move);
+            int to = CheckersModel.moveTo(move);
+            startRow = from / 8;
+            startCol = from % 8;
+            endRow = to / 8;
+            endCol = to % 8;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MultiJumpState {
+        CheckersModel cm;
+        int move;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            cm = BenchmarkPositions.load("multiJump");
+
+            // the longest jump sequence in the position
+            int[] moves = new int[CheckersModel.MAX_MOVES];
+            int count = cm.generateMoves(moves);
+            for (int i = 0; i < count; i++) {
+                if (CheckersModel.moveJumps(moves[i]) > CheckersModel.moveJumps(move)) {
+                    move = moves[i];
+                }
+            }
+        }
+    }
+
+    // saves to a temporary file, so the user's saved game is left alone
+    @State(Scope.Thread)
+    public static class SaveLoadState {
+        CheckersModel cm;
+        Path file;
+        String path;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            file = Files.createTempFile("checkers-bench", ".txt");
+            path = file.toString();
+            cm = BenchmarkPositions.load("midgame");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public int simpleMoveAndUndo(SimpleMoveState s) {
+        s.cm.moveOrJump(s.startRow, s.startCol, s.endRow, s.endCol);
+        int piece = s.cm.getPiece(s.endRow, s.endCol);
+        s.cm.undo();
+        return piece;
+    }
+
+    @Benchmark
+    public boolean multiJumpAndUndo(MultiJumpState s) {
+        s.cm.makeMove(s.move);
+        boolean player = s.cm.getCurrentPlayer();
+        s.cm.unmakeMove(s.move);
+        return player;
+    }
+
+    @Benchmark
+    public boolean anyLegalMoves(PositionState s) {
+        return s.cm.anyLegalMoves(s.cm.getCurrentPlayer());
+    }
+
+    @Benchmark
+    public int checkWinner(PositionState s) {
+        return s.cm.checkWinner();
+    }
+
+    @Benchmark
+    public int evaluate(PositionState s) {
+        return s.cm.evaluate();
+    }
+
+    @Benchmark
+    public int generateMoves(PositionState s, MoveBuffer buffer) {
+        return s.cm.generateMoves(buffer.moves);
+    }
+
+    @Benchmark
+    public CheckersModel copyBoard(PositionState s) {
+        return new CheckersModel(s.cm);
+    }
+
+    @Benchmark
+    public long saveAndLoadGame(SaveLoadState s) {
+        s.cm.saveGame(s.path);
+        s.cm.loadGame(s.path);
+        return s.cm.getHash();
+    }
+
+    @State(Scope.Thread)
+    public static class MoveBuffer {
+        final int[] moves = new int[CheckersModel.MAX_MOVES];
+    }
+}
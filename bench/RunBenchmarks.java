@@ -0,0 +1,28 @@
+package org.cis120.checkers;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark in ModelBenchmark with the GC profiler on, so each
+ * result comes with its allocation rate (gc.alloc.rate.norm is bytes per
+ * operation). Results are also written to bench-results.json for comparing
+ * runs. An optional argument is a regular expression that picks which
+ * benchmarks to run.
+ */
+public class RunBenchmarks {
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ModelBenchmark.class.getSimpleName();
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("bench-results.json")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,33 @@
+#!/bin/sh
+# Builds the benchmarks into bench-classes. Run from the top of the repository.
+#
+# JMH will not generate benchmarks for classes in the default package, so the
+# model's sources are copied into the org.cis120.checkers package (where the
+# benchmarks are) under bench-src and compiled from there. The pinned JMH jars
+# are downloaded from Maven Central into lib the first time.
+set -e
+
+JMH=1.37
+MAVEN=https://repo1.maven.org/maven2
+mkdir -p lib
+for jar in \
+        org/openjdk/jmh/jmh-core/$JMH/jmh-core-$JMH.jar \
+        org/openjdk/jmh/jmh-generator-annprocess/$JMH/jmh-generator-annprocess-$JMH.jar \
+        net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar \
+        org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar; do
+    if [ ! -f "lib/${jar##*/}" ]; then
+        curl -fsSL -o "lib/${jar##*/}" "$MAVEN/$jar"
+    fi
+done
+
+rm -rf bench-src bench-classes
+mkdir -p bench-src/org/cis120/checkers
+for source in main/*.java; do
+    # Game.java starts the game from outside the package
+    if [ "$source" != main/Game.java ]; then
+        { echo "package org.cis120.checkers;"; cat "$source"; } \
+            > "bench-src/org/cis120/checkers/${source##*/}"
+    fi
+done
+javac -encoding UTF-8 -cp "lib/*" -d bench-classes bench-src/org/cis120/checkers/*.java \
+    bench/*.java
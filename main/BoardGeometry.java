@@ -0,0 +1,157 @@
+/**
+ * This class describes the squares of a draughts board of any even size up
+ * to 10x10, as bits of a 64-bit mask.
+ *
+ * Only the dark squares are played on, so only they get bits. They are
+ * numbered row by row, two rows (one full row of the board's width) at a
+ * time, with one unused "ghost" bit after every two rows:
+ *
+ *   row 0:  bits 0 .. half-1        (the dark squares are in the odd columns)
+ *   row 1:  bits half .. 2*half-1   (the dark squares are in the even columns)
+ *   ghost:  bit size
+ *   row 2:  bits size+1 .. and so on
+ *
+ * With this layout the four diagonal neighbours of every square are always
+ * the same distance away in bits (half and half + 1 in each direction), so a
+ * whole mask of pieces moves one square diagonally with a single shift.
+ * Anything shifted off the edge of the board lands on a ghost bit or off the
+ * end and is cleared by masking with getSquares. A 10x10 board needs 54
+ * bits and an 8x8 board 35.
+ */
+public final class BoardGeometry {
+
+    public static final BoardGeometry EIGHT = new BoardGeometry(8);
+    public static final BoardGeometry TEN = new BoardGeometry(10);
+
+    // directions, as indexes into getShift: the first two go down the board (row increasing)
+    public static final int DOWN_LEFT = 0;
+    public static final int DOWN_RIGHT = 1;
+    public static final int UP_LEFT = 2;
+    public static final int UP_RIGHT = 3;
+
+    private final int size;
+    private final int half;
+    private final long squares;
+    private final int[] shifts;
+    private final int[] rows = new int[64];
+    private final int[] cols = new int[64];
+    private final long[] rowMasks;
+
+    public BoardGeometry(int size) {
+        if (size < 4 || size > 10 || size % 2 != 0) {
+            throw new IllegalArgumentException("Board size must be even and 4 to 10: " + size);
+        }
+        this.size = size;
+        half = size / 2;
+        shifts = new int[] {half, half + 1, -(half + 1), -half};
+        rowMasks = new long[size];
+
+        java.util.Arrays.fill(rows, -1);
+        java.util.Arrays.fill(cols, -1);
+        long all = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int bit = bit(row, col);
+                if (bit >= 0) {
+                    rows[bit] = row;
+                    cols[bit] = col;
+                    rowMasks[row] |= 1L << bit;
+                    all |= 1L << bit;
+                }
+            }
+        }
+        squares = all;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of dark squares.
+     */
+    public int getSquareCount() {
+        return size * half;
+    }
+
+    /**
+     * Returns the mask of every dark square.
+     */
+    public long getSquares() {
+        return squares;
+    }
+
+    /**
+     * Returns the bit of the square at row, col, or -1 for a light square or
+     * one off the board.
+     */
+    public int bit(int row, int col) {
+        if (row < 0 || row >= size || col < 0 || col >= size || (row + col) % 2 == 0) {
+            return -1;
+        }
+        return row / 2 * (size + 1) + row % 2 * half + col / 2;
+    }
+
+    public int row(int bit) {
+        return rows[bit];
+    }
+
+    public int col(int bit) {
+        return cols[bit];
+    }
+
+    /**
+     * Returns the mask of the dark squares in a row.
+     */
+    public long getRow(int row) {
+        return rowMasks[row];
+    }
+
+    /**
+     * Returns how far (in bits, negative for up) the next square in a
+     * direction is.
+     */
+    public int getShift(int direction) {
+        return shifts[direction];
+    }
+
+    /**
+     * Moves every square of the mask one square in the direction, dropping
+     * the ones that leave the board.
+     */
+    public long shift(long mask, int direction) {
+        int shift = shifts[direction];
+        return (shift > 0 ? mask << shift : mask >>> -shift) & squares;
+    }
+
+    /**
+     * Returns the square next to bit in the direction, or -1 at the edge.
+     */
+    public int next(int bit, int direction) {
+        int next = bit + shifts[direction];
+        return next >= 0 && next < 64 && (squares & 1L << next) != 0 ? next : -1;
+    }
+
+    /**
+     * Packs a mask into getSquareCount bits, one per dark square in order,
+     * leaving out the ghost bits.
+     */
+    public long compress(long mask) {
+        long packed = 0;
+        for (int pair = 0; pair < half; pair++) {
+            packed |= (mask >>> pair * (size + 1) & (1L << size) - 1) << pair * size;
+        }
+        return packed;
+    }
+
+    /**
+     * Undoes compress.
+     */
+    public long expand(long packed) {
+        long mask = 0;
+        for (int pair = 0; pair < half; pair++) {
+            mask |= (packed >>> pair * size & (1L << size) - 1) << pair * (size + 1);
+        }
+        return mask;
+    }
+}
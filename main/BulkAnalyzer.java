@@ -0,0 +1,473 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class scores large numbers of positions with the SearchEngine at a
+ * fixed depth, streaming them from a file of positions to a file of results.
+ *
+ * Positions are read in chunks of primitive arrays by the calling thread and
+ * analyzed on a work-stealing ForkJoinPool, where each chunk is split into
+ * smaller ranges so idle threads can take work from busy ones. Every thread
+ * has its own CheckersModel and SearchEngine (with its own
+ * TranspositionTable), made once and reused for every position. The table
+ * is cleared before each position, so a result never depends on which
+ * positions the thread happened to analyze before it. Results are
+ * written in input order: a chunk that finishes early waits until the
+ * chunks before it have been written. There is a fixed number of chunks,
+ * reused once written, so at most that many chunks of positions are in
+ * memory however large the input is. Throughput (positions per second) is
+ * reported while the run goes on.
+ *
+ * Input is either a GameArchive (every position of every game) or a text
+ * file with one PDN FEN position per line. Each output line is the position's
+ * number (0 is the first), the best move in PDN ("-" if there is none), its
+ * score for the player to move, and the depth searched, separated by tabs.
+ * A FEN line that cannot be read still counts as a position, and its output
+ * line is its number, "error", and the line number and what is wrong.
+ *
+ * Usage: java BulkAnalyzer INPUT OUTPUT [depth=N] [threads=N] [chunk=N] [inFlight=N]
+ */
+public class BulkAnalyzer {
+
+    public static final int DEFAULT_CHUNK_SIZE = 256;
+
+    // ranges of a chunk smaller than this are analyzed without splitting further
+    private static final int SPLIT_SIZE = 8;
+    private static final int TABLE_MEGABYTES = 4;
+
+    /**
+     * Fills chunks with positions, in order.
+     */
+    public interface PositionSource extends Closeable {
+        /**
+         * Fills the chunk with up to its capacity of the next positions and
+         * returns how many were read, 0 at the end.
+         */
+        int read(Chunk chunk) throws IOException;
+    }
+
+    /**
+     * A block of positions and their results, kept in primitive arrays.
+     */
+    public static class Chunk {
+        final long[] black;
+        final long[] red;
+        final long[] kings;
+        final boolean[] blackToMove;
+        final byte[] jumpAgainSquare; // -1 if no jump is in progress
+        final int[] moves;
+        final int[] scores;
+        final byte[] depths;
+        final String[] errors; // null unless the position could not be read
+        long number; // chunks are numbered in the order they are read
+        long first; // number of the first position
+        int count;
+
+        Chunk(int capacity) {
+            black = new long[capacity];
+            red = new long[capacity];
+            kings = new long[capacity];
+            blackToMove = new boolean[capacity];
+            jumpAgainSquare = new byte[capacity];
+            moves = new int[capacity];
+            scores = new int[capacity];
+            depths = new byte[capacity];
+            errors = new String[capacity];
+        }
+
+        public int capacity() {
+            return black.length;
+        }
+
+        /**
+         * Adds a position at the end of the chunk.
+         */
+        public void add(long blackPieces, long redPieces, long kingPieces, boolean blackMoves,
+                        int jumpAgain) {
+            black[count] = blackPieces;
+            red[count] = redPieces;
+            kings[count] = kingPieces;
+            blackToMove[count] = blackMoves;
+            jumpAgainSquare[count] = (byte) jumpAgain;
+            errors[count] = null;
+            count++;
+        }
+
+        /**
+         * Adds a position that could not be read, which is not analyzed and
+         * is written out as the error message instead.
+         */
+        public void addError(String message) {
+            add(0, 0, 0, true, -1);
+            errors[count - 1] = message;
+        }
+    }
+
+    private final int threads;
+    private final int depth;
+    private final int chunkSize;
+    private final int inFlight;
+
+    /**
+     * Creates an analyzer that searches every position depth moves deep on
+     * the given number of threads, with at most inFlight chunks of chunkSize
+     * positions read but not yet written.
+     */
+    public BulkAnalyzer(int threads, int depth, int chunkSize, int inFlight) {
+        if (threads < 1 || depth < 1 || chunkSize < 1 || inFlight < 1) {
+            throw new IllegalArgumentException("Threads, depth, chunk size and chunks in flight "
+                    + "must all be at least 1");
+        }
+        this.threads = threads;
+        this.depth = depth;
+        this.chunkSize = chunkSize;
+        this.inFlight = inFlight;
+    }
+
+    /**
+     * Analyzes every position from source and writes one line per position
+     * to out, in order. If progress is not null, the throughput so far is
+     * printed to it every reportSeconds seconds and once at the end. Returns
+     * the number of positions analyzed.
+     */
+    public long run(PositionSource source, Writer out, PrintStream progress, int reportSeconds)
+            throws IOException, InterruptedException {
+        ThreadLocal<CheckersModel> models = ThreadLocal.withInitial(() -> {
+            CheckersModel cm = new CheckersModel();
+            cm.setPublishing(false);
+            return cm;
+        });
+        ThreadLocal<SearchEngine> engines = ThreadLocal.withInitial(() ->
+                new SearchEngine(depth, Long.MAX_VALUE, new TranspositionTable(TABLE_MEGABYTES)));
+
+        BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(inFlight);
+        for (int i = 0; i < inFlight; i++) {
+            free.add(new Chunk(chunkSize));
+        }
+        OrderedWriter writer = new OrderedWriter(out, free, inFlight);
+        LongAdder analyzed = new LongAdder();
+        long begin = System.nanoTime();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ScheduledExecutorService reporter = null;
+        if (progress != null) {
+            reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "analysis-progress");
+                t.setDaemon(true);
+                return t;
+            });
+            reporter.scheduleAtFixedRate(() -> report(progress, analyzed.sum(), begin),
+                    reportSeconds, reportSeconds, TimeUnit.SECONDS);
+        }
+        try {
+            long next = 0;
+            while (writer.failure.get() == null) {
+                Chunk chunk = free.take();
+                chunk.count = 0;
+                chunk.number = writer.expect();
+                chunk.first = next;
+                int count = source.read(chunk);
+                if (count == 0) {
+                    writer.cancel();
+                    free.add(chunk);
+                    break;
+                }
+                next += count;
+                pool.execute(new RangeTask(chunk, 0, count, models, engines, analyzed, writer));
+            }
+            writer.awaitAll();
+        } finally {
+            pool.shutdownNow();
+            if (reporter != null) {
+                reporter.shutdownNow();
+            }
+        }
+
+        Throwable failure = writer.failure.get();
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure != null) {
+            throw new IllegalStateException("Analysis failed", failure);
+        }
+        out.flush();
+        if (progress != null) {
+            report(progress, analyzed.sum(), begin);
+        }
+        return analyzed.sum();
+    }
+
+    // helper function to print the number of positions analyzed and the rate so far
+    private static void report(PrintStream progress, long positions, long begin) {
+        long elapsed = Math.max(System.nanoTime() - begin, 1);
+        progress.printf("%d positions in %d ms (%.0f positions/sec)%n", positions,
+                elapsed / 1000000, positions * 1e9 / elapsed);
+    }
+
+    // analyzes part of a chunk, splitting it in two while it is large; the task for the
+    // whole chunk hands it to the writer when done
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+        private final ThreadLocal<CheckersModel> models;
+        private final ThreadLocal<SearchEngine> engines;
+        private final LongAdder analyzed;
+        private final OrderedWriter writer; // null except for the task of the whole chunk
+
+        RangeTask(Chunk chunk, int from, int to, ThreadLocal<CheckersModel> models,
+                  ThreadLocal<SearchEngine> engines, LongAdder analyzed, OrderedWriter writer) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+            this.models = models;
+            this.engines = engines;
+            this.analyzed = analyzed;
+            this.writer = writer;
+        }
+
+        @Override
+        protected void compute() {
+            if (writer == null) {
+                analyze();
+                return;
+            }
+            try {
+                analyze();
+            } catch (RuntimeException | Error e) {
+                // the chunk still goes through the writer, so the chunks after it are freed
+                writer.failure.compareAndSet(null, e);
+            }
+            writer.done(chunk);
+        }
+
+        private void analyze() {
+            if (to - from > SPLIT_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(chunk, from, middle, models, engines, analyzed, null),
+                        new RangeTask(chunk, middle, to, models, engines, analyzed, null));
+                return;
+            }
+            CheckersModel cm = models.get();
+            SearchEngine engine = engines.get();
+            for (int i = from; i < to; i++) {
+                if (chunk.errors[i] != null) {
+                    continue;
+                }
+                cm.setPosition(chunk.black[i], chunk.red[i], chunk.kings[i], chunk.blackToMove[i],
+                        chunk.jumpAgainSquare[i]);
+                engine.getTable().clear();
+                SearchResult result = engine.search(cm);
+                chunk.moves[i] = result.getMove();
+                chunk.scores[i] = result.getScore();
+                chunk.depths[i] = (byte) result.getDepth();
+            }
+            analyzed.add(to - from);
+        }
+    }
+
+    // writes finished chunks in the order they were read, then returns them to the free queue
+    private static class OrderedWriter {
+        private final Writer out;
+        private final BlockingQueue<Chunk> free;
+        private final Chunk[] finished; // by chunk number modulo the number of chunks
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final StringBuilder line = new StringBuilder();
+        private long submitted;
+        private long written;
+
+        OrderedWriter(Writer out, BlockingQueue<Chunk> free, int chunks) {
+            this.out = out;
+            this.free = free;
+            this.finished = new Chunk[chunks];
+        }
+
+        // returns the number of the next chunk to be analyzed
+        synchronized long expect() {
+            return submitted++;
+        }
+
+        // the chunk numbered by the last expect will not be analyzed after all
+        synchronized void cancel() {
+            submitted--;
+        }
+
+        synchronized void done(Chunk chunk) {
+            finished[(int) (chunk.number % finished.length)] = chunk;
+            while (finished[(int) (written % finished.length)] != null) {
+                int slot = (int) (written % finished.length);
+                Chunk next = finished[slot];
+                finished[slot] = null;
+                if (failure.get() == null) {
+                    try {
+                        write(next);
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+                written++;
+                free.add(next);
+            }
+            notifyAll();
+        }
+
+        synchronized void awaitAll() throws InterruptedException {
+            while (written < submitted) {
+                wait();
+            }
+        }
+
+        private void write(Chunk chunk) throws IOException {
+            for (int i = 0; i < chunk.count; i++) {
+                line.setLength(0);
+                line.append(chunk.first + i).append('\t');
+                if (chunk.errors[i] != null) {
+                    line.append("error\t").append(chunk.errors[i]).append('\n');
+                } else {
+                    line.append(chunk.moves[i] == -1 ? "-" : Pdn.moveToString(chunk.moves[i]))
+                            .append('\t').append(chunk.scores[i])
+                            .append('\t').append(chunk.depths[i]).append('\n');
+                }
+                out.append(line);
+            }
+        }
+    }
+
+    /**
+     * Reads every position of every game in an archive.
+     */
+    public static PositionSource archiveSource(GameArchive.Reader archive) {
+        CheckersModel scratch = new CheckersModel();
+        scratch.setPublishing(false);
+        return new PositionSource() {
+            private long next;
+
+            @Override
+            public int read(Chunk chunk) {
+                while (chunk.count < chunk.capacity() && next < archive.getPositionCount()) {
+                    archive.loadPosition(next++, scratch);
+                    chunk.add(scratch.getBlackPieces(), scratch.getRedPieces(),
+                            scratch.getKingPieces(), scratch.getCurrentPlayer(),
+                            scratch.getIsJumpAgain()
+                                    ? scratch.getJumpAgainRow() * 8 + scratch.getJumpAgainCol()
+                                    : -1);
+                }
+                return chunk.count;
+            }
+
+            @Override
+            public void close() throws IOException {
+                archive.close();
+            }
+        };
+    }
+
+    /**
+     * Reads one PDN FEN position per line, skipping blank lines. A line that
+     * is not a FEN position is added as an error, so the run goes on.
+     */
+    public static PositionSource fenSource(BufferedReader in) {
+        return new PositionSource() {
+            private long lineNumber;
+
+            @Override
+            public int read(Chunk chunk) throws IOException {
+                String line;
+                while (chunk.count < chunk.capacity() && (line = in.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    long[] position;
+                    try {
+                        position = Pdn.parseFen(line);
+                    } catch (IllegalArgumentException e) {
+                        chunk.addError("line " + lineNumber + ": " + e.getMessage());
+                        continue;
+                    }
+                    chunk.add(position[0], position[1], position[2], position[3] == 1, -1);
+                }
+                return chunk.count;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    // helper function to open a file as an archive if it starts like one, else as FEN lines
+    private static PositionSource open(Path path) throws IOException {
+        int magic = 0;
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] head = in.readNBytes(4);
+            if (head.length == 4) {
+                magic = ByteBuffer.wrap(head).order(ByteOrder.LITTLE_ENDIAN).getInt();
+            }
+        }
+        if (magic == GameArchive.MAGIC) {
+            return archiveSource(new GameArchive.Reader(path));
+        }
+        return fenSource(Files.newBufferedReader(path));
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: java BulkAnalyzer INPUT OUTPUT [depth=N] [threads=N] "
+                    + "[chunk=N] [inFlight=N]");
+            return;
+        }
+        int depth = 6;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunk = DEFAULT_CHUNK_SIZE;
+        int inFlight = 0;
+        for (int i = 2; i < args.length; i++) {
+            String[] keyValue = args[i].split("=", 2);
+            String key = keyValue[0];
+            String value = keyValue.length > 1 ? keyValue[1] : "";
+            if (key.equals("depth")) {
+                depth = Integer.parseInt(value);
+            } else if (key.equals("threads")) {
+                threads = Integer.parseInt(value);
+            } else if (key.equals("chunk")) {
+                chunk = Integer.parseInt(value);
+            } else if (key.equals("inFlight")) {
+                inFlight = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (inFlight == 0) {
+            inFlight = threads * 4;
+        }
+
+        BulkAnalyzer analyzer = new BulkAnalyzer(threads, depth, chunk, inFlight);
+        try (PositionSource source = open(Paths.get(args[0]));
+             Writer out = new BufferedWriter(new OutputStreamWriter(
+                     Files.newOutputStream(Paths.get(args[1]))), 1 << 16)) {
+            analyzer.run(source, out, System.err, 1);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This class holds the JDK Flight Recorder events recorded by CheckersModel
+ * and GameBoard.
+ *
+ * Every event is disabled by default. Until a recording turns them on, the
+ * JVM leaves begin and commit empty and the JIT removes the event objects
+ * altogether, so they cost nothing. To record them, start the game with
+ * {@code -XX:StartFlightRecording:filename=checkers.jfr,settings=checkers.jfc}
+ * (checkers.jfc is at the top of the repository) and open the file in JDK
+ * Mission Control, or print it with {@code jfr print --categories Checkers}.
+ */
+public final class CheckersEvents {
+
+    private CheckersEvents() {
+    }
+
+    @Name("checkers.MoveOrJump")
+    @Label("Move Or Jump")
+    @Description("One call to CheckersModel.moveOrJump")
+    @Category({"Checkers", "Model"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class MoveOrJump extends Event {
+        @Label("Move Type")
+        @Description("move, jump, jump again (the same piece must jump on) or illegal")
+        public String moveType;
+
+        @Label("From")
+        public int from;
+
+        @Label("To")
+        public int to;
+    }
+
+    @Name("checkers.CheckWinner")
+    @Label("Check Winner")
+    @Category({"Checkers", "Model"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class CheckWinner extends Event {
+        @Label("Winner")
+        @Description("0 while the game goes on, 1 if BLACK won, 2 if RED won, "
+                + "3 if the game is drawn")
+        public int winner;
+    }
+
+    @Name("checkers.Undo")
+    @Label("Undo")
+    @Category({"Checkers", "Model"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class Undo extends Event {
+        @Label("Moves Left")
+        @Description("Steps left in the undo history afterwards")
+        public int movesLeft;
+    }
+
+    @Name("checkers.SaveGame")
+    @Label("Save Game")
+    @Category({"Checkers", "Model"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class SaveGame extends Event {
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    @Name("checkers.LoadGame")
+    @Label("Load Game")
+    @Category({"Checkers", "Model"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class LoadGame extends Event {
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    @Name("checkers.Paint")
+    @Label("Paint Board")
+    @Description("One call to GameBoard.paintComponent")
+    @Category({"Checkers", "GUI"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class Paint extends Event {
+        @Label("Squares")
+        @Description("Squares inside the area repainted")
+        public int squares;
+    }
+
+    @Name("checkers.Click")
+    @Label("Click To Repaint")
+    @Description("From a click on the board until the squares it changed are painted")
+    @Category({"Checkers", "GUI"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class Click extends Event {
+        @Label("Row")
+        public int row;
+
+        @Label("Column")
+        public int col;
+
+        @Label("Squares Changed")
+        public int squaresChanged;
+    }
+}
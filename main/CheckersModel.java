@@ -1,5 +1,6 @@
 import java.io.*;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * This class is a model for Checkers.
@@ -15,19 +16,69 @@ import java.util.LinkedList;
  */
 public class CheckersModel {
 
-    private int[][] board;
+    // The position is kept as three 64-bit masks, one bit per square of the
+    // 8x8 board (bit index = row * 8 + col). A black king is set in both
+    // blackPieces and kingPieces, and likewise for red.
+    private long blackPieces;
+    private long redPieces;
+    private long kingPieces;
+    private long pieceHash;
     private boolean player1 = true;
+
+    // number of pieces of each kind on the board, indexed by piece code
+    private final int[] pieceCounts = new int[5];
+
+    // weights for evaluate, and the sum of the evaluator's piece-square values
+    // of every piece on the board (black's positive, red's negative)
+    private Evaluator evaluator = Evaluator.DEFAULT;
+    private int pieceSquareScore;
+
+    // cached answer to anyLegalMoves(player1): 1 if yes, 0 if no, -1 if not worked out yet
+    private int legalMovesCache = -1;
     private boolean gameOver = false;
 
-    private LinkedList<int[][]> undoList = new LinkedList<>();
-    private LinkedList<Boolean> undoPlayers = new LinkedList<>();
+    // Undo history, one record per moveOrJump step, packed into a long:
+    //   bits 0-5    square the piece moved from
+    //   bits 6-11   square the piece moved to
+    //   bits 12-17  square of the captured piece
+    //   bits 18-20  captured piece (EMPTY for a simple move)
+    //   bits 21-36  squares promoted by the step (row 0 in the low 8 bits, row 7 in the high 8)
+    //   bits 37-43  jump in progress before the step (bit 6 set, square in bits 0-5), or 0
+    //   bit 44      player1 before the step
+    //   bits 45-46  legalMovesCache before the step, plus one
+    //   bit 47      gameOver before the step
+    //   bits 48-63  quietMoves before the step
+    private long[] undoHistory = new long[64];
+    private int undoSize;
 
     private boolean isJumpAgain = false;
     private int jumpAgainRow, jumpAgainCol;
 
+    // draw rules: how often each position in the game has occurred, how often the current
+    // one has, and the moves since the last capture or man move (a king moving is quiet)
+    private final RepetitionTable repetitions;
+    private int repeats;
+
+    // the position the undo history starts from, made into a Position only when asked for
+    private long startBlack, startRed, startKings, startHash;
+    private boolean startPlayer1;
+    private int startJumpAgain;
+    private Position historyStart;
+    private int quietMoves;
+    private int drawMoves = DEFAULT_DRAW_MOVES;
+
+    // the position as of the last change, for other threads to read, and whether
+    // changes are published (off while a search plays moves on the model)
+    private volatile Position position;
+    private boolean publishing = true;
+
+    // records every step and undo for crash recovery, or null
+    private MoveJournal journal;
+
     // change these if you want to save/load to a different file
     static final String PATH_TO_LOAD_GAME = "files/savedCheckers.txt";
     static final String PATH_TO_SAVE_GAME = "files/savedCheckers.txt";
+    static final String PATH_TO_JOURNAL = "files/checkers.journal";
 
     public static final int EMPTY = 0;
     public static final int BLACK = 1;
@@ -35,59 +86,355 @@ public class CheckersModel {
     public static final int BLACK_KING = 3;
     public static final int RED_KING = 4;
 
+    // checkWinner's result for a drawn game (1 and 2 are black and red winning)
+    public static final int DRAW = 3;
+
+    // a game is drawn after this many moves in a row (by both players together)
+    // with no capture and no man moved, unless changed with setDrawMoves
+    public static final int DEFAULT_DRAW_MOVES = 80;
+
+    // masks used to stop diagonal shifts from wrapping around the board edges
+    private static final long NOT_COL_0 = ~0x0101010101010101L;
+    private static final long NOT_COL_7 = ~0x8080808080808080L;
+    private static final long ROW_0 = 0x00000000000000FFL;
+    private static final long ROW_7 = 0xFF00000000000000L;
+
+    // Moves from generateMoves are packed into a single int:
+    //   bits 0-5    square the piece starts on (row * 8 + col)
+    //   bits 6-9    number of jumps in the sequence (0 for a simple move)
+    //   bits 10-31  direction of each step, two bits per step
+    public static final int MAX_MOVES = 256;
+    public static final int MAX_JUMPS = 11;
+
+    // square offsets for the four diagonal directions, indexed by the two direction bits
+    private static final int[] DIRECTION_OFFSETS = {7, 9, -9, -7};
+
+    // For each square and direction (index square * 4 + direction), the square
+    // diagonally next to it and the square a jump that way lands on, or -1 off
+    // the board, so the rule checks never work out rows, columns or edges
+    private static final int[] NEIGHBORS = new int[64 * 4];
+    private static final int[] LANDINGS = new int[64 * 4];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            int row = square >>> 3;
+            int col = square & 7;
+            for (int direction = 0; direction < 4; direction++) {
+                int rowStep = direction < 2 ? 1 : -1;
+                int colStep = direction == 0 || direction == 2 ? -1 : 1;
+                int index = square * 4 + direction;
+                NEIGHBORS[index] = onBoard(row + rowStep, col + colStep)
+                        ? square + DIRECTION_OFFSETS[direction] : -1;
+                LANDINGS[index] = onBoard(row + 2 * rowStep, col + 2 * colStep)
+                        ? square + 2 * DIRECTION_OFFSETS[direction] : -1;
+            }
+        }
+    }
+
+    // when set, evaluate checks the incremental score against a full recount
+    private static final boolean DEBUG_EVALUATION = Boolean.getBoolean("checkers.debugEvaluation");
+
+    // Zobrist keys: one per piece type and square, one for red to move, and one
+    // per square for a jump in progress. The seed is fixed so hashes are stable
+    // between runs.
+    private static final long[][] PIECE_KEYS = new long[5][64];
+    private static final long[] JUMP_AGAIN_KEYS = new long[64];
+    private static final long RED_TO_MOVE_KEY;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x636865636B657273L);
+        for (int piece = BLACK; piece <= RED_KING; piece++) {
+            for (int square = 0; square < 64; square++) {
+                PIECE_KEYS[piece][square] = random.nextLong();
+            }
+        }
+        for (int square = 0; square < 64; square++) {
+            JUMP_AGAIN_KEYS[square] = random.nextLong();
+        }
+        RED_TO_MOVE_KEY = random.nextLong();
+    }
+
+    // starting squares for each side
+    private static final long BLACK_START = 0x0000000000AA55AAL;
+    private static final long RED_START = 0x55AA550000000000L;
+
 
     /**
      * Constructor sets up game state.
      */
     public CheckersModel() {
+        repetitions = new RepetitionTable();
         reset();
     }
 
+    /**
+     * Copy constructor copies the position and whose turn it is, but not the
+     * undo history, so the copy is cheap to make. Undo on the copy stops at
+     * the position it was copied from. The positions counted for the draw
+     * rules are copied, so the copy sees the same repetitions as other.
+     */
+    public CheckersModel(CheckersModel other) {
+        repetitions = new RepetitionTable(other.repetitions);
+        blackPieces = other.blackPieces;
+        redPieces = other.redPieces;
+        kingPieces = other.kingPieces;
+        pieceHash = other.pieceHash;
+        evaluator = other.evaluator;
+        pieceSquareScore = other.pieceSquareScore;
+        System.arraycopy(other.pieceCounts, 0, pieceCounts, 0, pieceCounts.length);
+        legalMovesCache = other.legalMovesCache;
+        player1 = other.player1;
+        gameOver = other.gameOver;
+        isJumpAgain = other.isJumpAgain;
+        jumpAgainRow = other.jumpAgainRow;
+        jumpAgainCol = other.jumpAgainCol;
+        quietMoves = other.quietMoves;
+        drawMoves = other.drawMoves;
+        repeats = other.repeats;
+        markHistoryStart();
+        publish();
+    }
+
+    /**
+     * Creates a model at the given position, with no undo history.
+     */
+    public CheckersModel(Position position) {
+        repetitions = new RepetitionTable();
+        setPosition(position.getBlackPieces(), position.getRedPieces(),
+                position.getKingPieces(), position.getCurrentPlayer(),
+                position.getJumpAgainSquare());
+    }
+
     /**
      * reset (re-)sets the game state to start a new game.
      */
     public void reset() {
-        board = new int[8][8];
+        blackPieces = BLACK_START;
+        redPieces = RED_START;
+        kingPieces = 0L;
+        pieceHash = computePieceHash();
+        countPieces();
+        pieceSquareScore = computePieceSquareScore();
+        legalMovesCache = -1;
         player1 = true;
-        undoList = new LinkedList<>();
-        undoPlayers = new LinkedList<>();
-
-        for (int row = 0; row < board.length; row++) {
-            for (int col = 0; col < board[row].length; col++) {
-                board[row][col] = EMPTY;
-                if (row == 0 || row == 2) {
-                    if (col % 2 == 1) {
-                        board[row][col] = BLACK;
-                    }
-                } else if (row == 1) {
-                    if (col % 2 == 0) {
-                        board[row][col] = BLACK;
-                    }
-                } else if (row == 5 || row == 7) {
-                    if (col % 2 == 0) {
-                        board[row][col] = RED;
-                    }
-                } else if (row == 6) {
-                    if (col % 2 == 1) {
-                        board[row][col] = RED;
-                    }
-                }
-            }
+        undoSize = 0;
+        startHistory();
+        publish();
+    }
+
+    // helper function to start counting positions for the draw rules from the current one
+    private void startHistory() {
+        repetitions.clear();
+        repeats = repetitions.add(getHash());
+        quietMoves = 0;
+        markHistoryStart();
+        if (journal != null) {
+            journal.start(this);
         }
-        addUndoStep();
     }
 
-    // helper function to copy current state of board
-    private int[][] copyBoard(int[][] currBoard) {
-        int[][] temp = new int[8][8];
-        for (int row = 0; row < 8; row++) {
-            System.arraycopy(currBoard[row], 0, temp[row], 0, 8);
+    // helper function to count the pieces of each kind from scratch
+    private void countPieces() {
+        pieceCounts[BLACK] = Long.bitCount(blackPieces & ~kingPieces);
+        pieceCounts[RED] = Long.bitCount(redPieces & ~kingPieces);
+        pieceCounts[BLACK_KING] = Long.bitCount(blackPieces & kingPieces);
+        pieceCounts[RED_KING] = Long.bitCount(redPieces & kingPieces);
+    }
+
+    // helper function to add up the piece-square values of the pieces on the board from scratch
+    private int computePieceSquareScore() {
+        int score = 0;
+        long pieces = blackPieces | redPieces;
+        while (pieces != 0) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            score += evaluator.pieceSquare(getPiece(square >>> 3, square & 7), square);
         }
-        return temp;
+        return score;
+    }
+
+    // helper function to hash the pieces on the board from scratch
+    private long computePieceHash() {
+        long h = 0L;
+        long pieces = blackPieces | redPieces;
+        while (pieces != 0) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            h ^= PIECE_KEYS[getPiece(square >>> 3, square & 7)][square];
+        }
+        return h;
+    }
+
+    // helper function to get the mask bit of a square
+    private static long bit(int row, int col) {
+        return 1L << (row * 8 + col);
+    }
+
+    private static boolean onBoard(int row, int col) {
+        return row >= 0 && row < 8 && col >= 0 && col < 8;
     }
 
     public int getPiece(int row, int col) {
-        return board[row][col];
+        long square = bit(row, col);
+        if ((blackPieces & square) != 0) {
+            return (kingPieces & square) != 0 ? BLACK_KING : BLACK;
+        } else if ((redPieces & square) != 0) {
+            return (kingPieces & square) != 0 ? RED_KING : RED;
+        }
+        return EMPTY;
+    }
+
+    public long getBlackPieces() {
+        return blackPieces;
+    }
+
+    public long getRedPieces() {
+        return redPieces;
+    }
+
+    public long getKingPieces() {
+        return kingPieces;
+    }
+
+    /**
+     * Returns the Zobrist hash of the position: the pieces, the player to
+     * move, and any jump in progress. The piece part is updated as moves are
+     * made and taken back, so this is O(1).
+     */
+    public long getHash() {
+        long h = pieceHash;
+        if (!player1) {
+            h ^= RED_TO_MOVE_KEY;
+        }
+        if (isJumpAgain) {
+            h ^= JUMP_AGAIN_KEYS[jumpAgainRow * 8 + jumpAgainCol];
+        }
+        return h;
+    }
+
+    /**
+     * Returns the position as of the last change to the model. This is safe
+     * to call from any thread, without locking: the model publishes a new
+     * immutable Position after every reset, move, undo or load (or when
+     * publishing is turned back on), and this returns the latest one.
+     */
+    public Position getPosition() {
+        return position;
+    }
+
+    /**
+     * Turns publishing positions on or off. A search turns it off while it
+     * plays moves on the model, so readers keep seeing the position it
+     * started from and nothing is allocated per move. Turning it back on
+     * publishes the current position, if it has changed.
+     */
+    public void setPublishing(boolean on) {
+        publishing = on;
+        Position last = position;
+        if (last == null || last.getHash() != getHash() || last.getBlackPieces() != blackPieces
+                || last.getRedPieces() != redPieces || last.getKingPieces() != kingPieces) {
+            publish();
+        }
+    }
+
+    public boolean isPublishing() {
+        return publishing;
+    }
+
+    /**
+     * Attaches a journal that records every step played and taken back from
+     * now on, or detaches it (null). MoveJournal.open does this. Copies of
+     * the model do not share the journal.
+     */
+    public void setJournal(MoveJournal journal) {
+        this.journal = journal;
+    }
+
+    public MoveJournal getJournal() {
+        return journal;
+    }
+
+    // helper function to make the current position visible to getPosition
+    private void publish() {
+        if (publishing) {
+            position = snapshot();
+        }
+    }
+
+    // helper function to make a Position of the current state
+    private Position snapshot() {
+        return new Position(blackPieces, redPieces, kingPieces, player1,
+                isJumpAgain ? jumpAgainRow * 8 + jumpAgainCol : -1, getHash());
+    }
+
+    /**
+     * Returns the position the undo history (getMoveHistory) starts from:
+     * the position at the last reset, setBoard, setPosition or loadGame, or
+     * the one the model was copied from.
+     */
+    public Position getHistoryStart() {
+        if (historyStart == null) {
+            historyStart = new Position(startBlack, startRed, startKings, startPlayer1,
+                    startJumpAgain, startHash);
+        }
+        return historyStart;
+    }
+
+    // helper function to remember the current position as the start of the undo history
+    private void markHistoryStart() {
+        startBlack = blackPieces;
+        startRed = redPieces;
+        startKings = kingPieces;
+        startPlayer1 = player1;
+        startJumpAgain = isJumpAgain ? jumpAgainRow * 8 + jumpAgainCol : -1;
+        startHash = getHash();
+        historyStart = null;
+    }
+
+    /**
+     * Returns the score of the position for the player to move, using the
+     * current Evaluator: positive when that player is ahead. The piece-square
+     * part is kept up to date as moves are made and taken back, so this does
+     * not scan the board. Run with -Dcheckers.debugEvaluation=true to check
+     * every score against evaluateFromScratch.
+     */
+    public int evaluate() {
+        if (DEBUG_EVALUATION && pieceSquareScore != computePieceSquareScore()) {
+            throw new IllegalStateException("Incremental evaluation is " + pieceSquareScore
+                    + " but the board adds up to " + computePieceSquareScore());
+        }
+        int score = pieceSquareScore + evaluator.mobility(blackPieces, redPieces, kingPieces);
+        return player1 ? score : -score;
+    }
+
+    /**
+     * Returns the same score as evaluate, worked out from a full scan of
+     * the board.
+     */
+    public int evaluateFromScratch() {
+        int score = computePieceSquareScore()
+                + evaluator.mobility(blackPieces, redPieces, kingPieces);
+        return player1 ? score : -score;
+    }
+
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Changes the weights evaluate uses.
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+        pieceSquareScore = computePieceSquareScore();
+    }
+
+    /**
+     * Returns how many of the given piece are on the board. BLACK and RED
+     * count men only; kings are counted under BLACK_KING and RED_KING.
+     */
+    public int getPieceCount(int piece) {
+        return pieceCounts[piece];
     }
 
     public boolean getCurrentPlayer() {
@@ -98,20 +445,112 @@ public class CheckersModel {
         return isJumpAgain;
     }
 
+    public int getJumpAgainRow() {
+        return jumpAgainRow;
+    }
+
+    public int getJumpAgainCol() {
+        return jumpAgainCol;
+    }
+
     public boolean getIsGameOver() {
         return gameOver;
     }
 
+    /**
+     * Replaces the pieces on the board. Like loadGame, this starts a new undo
+     * history at the given position.
+     */
     public void setBoard(int[][] newBoard) {
+        long black = 0L;
+        long red = 0L;
+        long kings = 0L;
         for (int row = 0; row < 8; row++) {
-            System.arraycopy(newBoard[row], 0, board[row], 0, 8);
+            for (int col = 0; col < 8; col++) {
+                long square = bit(row, col);
+                int piece = newBoard[row][col];
+                if (piece == BLACK || piece == BLACK_KING) {
+                    black |= square;
+                } else if (piece == RED || piece == RED_KING) {
+                    red |= square;
+                }
+                if (piece == BLACK_KING || piece == RED_KING) {
+                    kings |= square;
+                }
+            }
+        }
+        blackPieces = black;
+        redPieces = red;
+        kingPieces = kings;
+        pieceHash = computePieceHash();
+        countPieces();
+        pieceSquareScore = computePieceSquareScore();
+        legalMovesCache = -1;
+        undoSize = 0;
+        startHistory();
+        publish();
+    }
+
+    /**
+     * Replaces the whole position with the given piece masks (one bit per
+     * square, bit index row * 8 + col; kings are set in both their color's
+     * mask and kings). jumpAgainSquare is the square of a piece in the middle
+     * of a jump, or -1. Like setBoard, this starts a new undo history.
+     */
+    public void setPosition(long black, long red, long kings, boolean blackToMove,
+                            int jumpAgainSquare) {
+        if ((black & red) != 0 || (kings & ~(black | red)) != 0) {
+            throw new IllegalArgumentException("Pieces overlap or a king has no color");
+        }
+        blackPieces = black;
+        redPieces = red;
+        kingPieces = kings;
+        player1 = blackToMove;
+        isJumpAgain = jumpAgainSquare >= 0;
+        if (isJumpAgain) {
+            jumpAgainRow = jumpAgainSquare / 8;
+            jumpAgainCol = jumpAgainSquare % 8;
         }
+        gameOver = false;
+        pieceHash = computePieceHash();
+        countPieces();
+        pieceSquareScore = computePieceSquareScore();
+        legalMovesCache = -1;
+        undoSize = 0;
+        startHistory();
+        publish();
     }
 
+    /**
+     * Returns 1 if BLACK has won, 2 if RED has won, DRAW if the game is
+     * drawn (see isDraw), or 0 while the game goes on.
+     */
     public int checkWinner() {
+        CheckersEvents.CheckWinner event = new CheckersEvents.CheckWinner();
+        event.begin();
+        int winner = findWinner();
+        if (event.shouldCommit()) {
+            event.winner = winner;
+            event.commit();
+        }
+        return winner;
+    }
 
-        if (!anyLegalMoves(player1)) {
+    // helper function to work out the winner (and set gameOver), without recording an event
+    private int findWinner() {
+        int winner = getWinner();
+        if (winner != 0) {
             gameOver = true;
+        }
+        return winner;
+    }
+
+    /**
+     * Returns the same result as checkWinner, but leaves the model exactly
+     * as it is and records no event.
+     */
+    public int getWinner() {
+        if (!anyLegalMoves(player1)) {
             if (player1) {
                 return 2;
             } else {
@@ -119,48 +558,109 @@ public class CheckersModel {
             }
         }
 
-        int blackLeft = 0;
-        int redLeft = 0;
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                if (board[row][col] == RED || board[row][col] == RED_KING) {
-                    redLeft++;
-                } else if (board[row][col] == BLACK || board[row][col] == BLACK_KING) {
-                    blackLeft++;
-                }
-            }
-        }
-        if (redLeft == 0) {
-            gameOver = true;
+        if (pieceCounts[RED] + pieceCounts[RED_KING] == 0) {
             return 1;
-        } else if (blackLeft == 0) {
-            gameOver = true;
+        } else if (pieceCounts[BLACK] + pieceCounts[BLACK_KING] == 0) {
             return 2;
         }
+
+        if (isDraw()) {
+            return DRAW;
+        }
         return 0;
     }
 
+    /**
+     * Returns true if the position has occurred three times in the game, or
+     * the last getDrawMoves moves have had no capture and no man moved.
+     * Positions from before the model was reset or loaded do not count; a
+     * copy counts the same positions as the model it was copied from.
+     */
+    public boolean isDraw() {
+        return repeats >= 3 || drawMoves > 0 && quietMoves >= drawMoves;
+    }
+
+    public int getDrawMoves() {
+        return drawMoves;
+    }
+
+    /**
+     * Returns how many moves in a row have had no capture and no man moved.
+     */
+    public int getQuietMoves() {
+        return quietMoves;
+    }
+
+    /**
+     * Sets how many moves in a row without a capture or a man moving draw
+     * the game, or 0 for no limit.
+     */
+    public void setDrawMoves(int moves) {
+        if (moves < 0) {
+            throw new IllegalArgumentException("Draw moves cannot be negative: " + moves);
+        }
+        drawMoves = moves;
+    }
+
     public void moveOrJump(int startRow, int startCol, int endRow, int endCol) {
+        if (recordStep(startRow, startCol, endRow, endCol)) {
+            if (journal != null) {
+                journal.step(startRow * 8 + startCol, endRow * 8 + endCol);
+            }
+            publish();
+        }
+    }
+
+    // helper function to play one step, recording it as a MoveOrJump event; false if illegal
+    private boolean recordStep(int startRow, int startCol, int endRow, int endCol) {
+        CheckersEvents.MoveOrJump event = new CheckersEvents.MoveOrJump();
+        event.begin();
+        String moveType = step(startRow, startCol, endRow, endCol);
+        if (event.shouldCommit()) {
+            event.moveType = moveType;
+            event.from = startRow * 8 + startCol;
+            event.to = endRow * 8 + endCol;
+            event.commit();
+        }
+        return moveType != ILLEGAL;
+    }
+
+    private static final String ILLEGAL = "illegal";
+
+    // helper function to play one move or jump if it is legal, returning what kind of step it was
+    private String step(int startRow, int startCol, int endRow, int endCol) {
         if (canMove(startRow, startCol, endRow, endCol)) {
 
-            int curr = board[startRow][startCol];
+            long record = undoRecord(startRow * 8 + startCol, endRow * 8 + endCol);
+            boolean king = (kingPieces & bit(startRow, startCol)) != 0;
 
-            board[startRow][startCol] = EMPTY;
-            board[endRow][endCol] = curr;
-            checkPromotion();
+            movePiece(startRow * 8 + startCol, endRow * 8 + endCol);
+            record |= promotionBits(checkPromotion());
             player1 = !player1;
-            addUndoStep();
-            checkWinner();
+            legalMovesCache = -1;
+            quietMoves = king ? Math.min(quietMoves + 1, 0xFFFF) : 0;
+            repeats = repetitions.add(getHash());
+            findWinner();
+            addUndoStep(record);
+            return "move";
 
         } else if (canJump(startRow, startCol, endRow, endCol)) {
 
-            int curr = board[startRow][startCol];
             int middleRow = (startRow + endRow) / 2;
             int middleCol = (startCol + endCol) / 2;
+            long middle = bit(middleRow, middleCol);
+
+            long record = undoRecord(startRow * 8 + startCol, endRow * 8 + endCol);
 
-            board[startRow][startCol] = EMPTY;
-            board[endRow][endCol] = curr;
-            board[middleRow][middleCol] = EMPTY;
+            movePiece(startRow * 8 + startCol, endRow * 8 + endCol);
+            int captured = getPiece(middleRow, middleCol);
+            record |= (long) (middleRow * 8 + middleCol) << 12 | (long) captured << 18;
+            pieceHash ^= PIECE_KEYS[captured][middleRow * 8 + middleCol];
+            pieceSquareScore -= evaluator.pieceSquare(captured, middleRow * 8 + middleCol);
+            pieceCounts[captured]--;
+            redPieces &= ~middle;
+            blackPieces &= ~middle;
+            kingPieces &= ~middle;
 
             jumpAgainRow = endRow;
             jumpAgainCol = endCol;
@@ -172,268 +672,461 @@ public class CheckersModel {
                 isJumpAgain = true;
             }
 
-            checkPromotion();
+            record |= promotionBits(checkPromotion());
 
-            addUndoStep();
-            checkWinner();
+            legalMovesCache = -1;
+            quietMoves = 0;
+            repeats = repetitions.add(getHash());
+            findWinner();
+            addUndoStep(record);
+            return isJumpAgain ? "jump again" : "jump";
         }
+        return ILLEGAL;
     }
 
-    // helper function to add current board state and player turn to LinkedList for undo feature
-    private void addUndoStep() {
-        undoList.add(copyBoard(board));
-        if (player1) {
-            undoPlayers.add(true);
+    // helper function to move whichever piece is on the from square to the (empty) to square
+    private void movePiece(int fromSquare, int toSquare) {
+        long from = 1L << fromSquare;
+        long to = 1L << toSquare;
+        int piece = getPiece(fromSquare >>> 3, fromSquare & 7);
+        long[] keys = PIECE_KEYS[piece];
+        pieceHash ^= keys[fromSquare] ^ keys[toSquare];
+        pieceSquareScore += evaluator.pieceSquare(piece, toSquare)
+                - evaluator.pieceSquare(piece, fromSquare);
+
+        long fromTo = from | to;
+        if ((blackPieces & from) != 0) {
+            blackPieces ^= fromTo;
         } else {
-            undoPlayers.add(false);
+            redPieces ^= fromTo;
+        }
+        if ((kingPieces & from) != 0) {
+            kingPieces ^= fromTo;
         }
     }
 
-    // helper function to check if any piece on the board should be promoted to king
-    private void checkPromotion() {
-        for (int col = 0; col < 8; col++) {
-            if (board[0][col] == RED) {
-                board[0][col] = RED_KING;
-                isJumpAgain = false;
-            }
-            if (board[7][col] == BLACK) {
-                board[7][col] = BLACK_KING;
-                isJumpAgain = false;
+    // helper function to start an undo record, saving the state the step is about to change
+    private long undoRecord(int from, int to) {
+        long jumpState = isJumpAgain ? 64 | jumpAgainRow * 8 + jumpAgainCol : 0;
+        return from | (long) to << 6 | jumpState << 37 | (player1 ? 1L : 0L) << 44
+                | (long) (legalMovesCache + 1) << 45 | (gameOver ? 1L : 0L) << 47
+                | (long) quietMoves << 48;
+    }
+
+    // helper function to pack the promoted squares (always on row 0 or 7) into record bits 21-36
+    private static long promotionBits(long promoted) {
+        return ((promoted & ROW_0) | (promoted >>> 48 & 0xFF00)) << 21;
+    }
+
+    // helper function to add a step to the undo history
+    private void addUndoStep(long record) {
+        if (undoSize == undoHistory.length) {
+            undoHistory = Arrays.copyOf(undoHistory, undoSize * 2);
+        }
+        undoHistory[undoSize++] = record;
+    }
+
+    // helper function to promote any men on the last rows to kings, returning the squares promoted
+    private long checkPromotion() {
+        long promoted = (redPieces & ROW_0 | blackPieces & ROW_7) & ~kingPieces;
+        if (promoted != 0) {
+            kingPieces |= promoted;
+            isJumpAgain = false;
+            for (long left = promoted; left != 0; left &= left - 1) {
+                int square = Long.numberOfTrailingZeros(left);
+                int king = getPiece(square >>> 3, square & 7);
+                pieceHash ^= PIECE_KEYS[king - 2][square] ^ PIECE_KEYS[king][square];
+                pieceSquareScore += evaluator.pieceSquare(king, square)
+                        - evaluator.pieceSquare(king - 2, square);
+                pieceCounts[king - 2]--;
+                pieceCounts[king]++;
             }
         }
+        return promoted;
     }
 
     private boolean canMove(int startRow, int startCol, int endRow, int endCol) {
+        return stepDirection(startRow, startCol, endRow, endCol, NEIGHBORS) >= 0;
+    }
 
-        // if player is in the middle of a double jump, he must do second jump
-        if (isJumpAgain) {
-            if (startRow != jumpAgainRow || startCol != jumpAgainCol) {
-                return false;
-            }
+    private boolean canJump(int startRow, int startCol, int endRow, int endCol) {
+        int direction = stepDirection(startRow, startCol, endRow, endCol, LANDINGS);
+        long opponent = player1 ? redPieces : blackPieces;
+        return direction >= 0
+                && (opponent & 1L << NEIGHBORS[(startRow * 8 + startCol) * 4 + direction]) != 0;
+    }
+
+    // helper function to find the direction in which the piece on the start square reaches the
+    // empty end square in targets (NEIGHBORS or LANDINGS), or -1 if there is none, the piece is
+    // not the player's, or it may not go that way
+    private int stepDirection(int startRow, int startCol, int endRow, int endCol, int[] targets) {
+        if (!onBoard(startRow, startCol) || !onBoard(endRow, endCol)) {
+            return -1;
         }
+        int start = startRow * 8 + startCol;
+        int end = endRow * 8 + endCol;
 
-        int startPiece = board[startRow][startCol];
+        // if player is in the middle of a double jump, he must do second jump
+        if (isJumpAgain && start != jumpAgainRow * 8 + jumpAgainCol) {
+            return -1;
+        }
 
-        if (startPiece == EMPTY) {
-            return false;
+        // also rejects empty start squares and the other player's pieces
+        long own = player1 ? blackPieces : redPieces;
+        if ((own & 1L << start) == 0 || ((blackPieces | redPieces) & 1L << end) != 0) {
+            return -1;
         }
 
-        if (endRow >= 8 || endCol >= 8 || endRow < 0 || endCol < 0) {
-            return false;
+        // black men go down the board (directions 0 and 1), red men up (2 and 3), kings both
+        boolean king = (kingPieces & 1L << start) != 0;
+        int last = king || !player1 ? 3 : 1;
+        for (int direction = king || player1 ? 0 : 2; direction <= last; direction++) {
+            if (targets[start * 4 + direction] == end) {
+                return direction;
+            }
         }
+        return -1;
+    }
 
-        if (board[endRow][endCol] != EMPTY) {
+    private boolean canJumpAgain(int startRow, int startCol) {
+        int start = startRow * 8 + startCol;
+        long own = player1 ? blackPieces : redPieces;
+        if ((own & 1L << start) == 0) {
             return false;
         }
-
-        if (player1) {
-            if (startPiece == RED || startPiece == RED_KING) {
-                return false;
-            }
-        } else {
-            if (startPiece == BLACK || startPiece == BLACK_KING) {
-                return false;
+        long opponent = player1 ? redPieces : blackPieces;
+        long occupied = blackPieces | redPieces;
+        boolean king = (kingPieces & 1L << start) != 0;
+        int last = king || !player1 ? 3 : 1;
+        for (int direction = king || player1 ? 0 : 2; direction <= last; direction++) {
+            int land = LANDINGS[start * 4 + direction];
+            if (land >= 0 && (occupied & 1L << land) == 0
+                    && (opponent & 1L << NEIGHBORS[start * 4 + direction]) != 0) {
+                return true;
             }
         }
+        return false;
+    }
 
-        boolean blackMove = endRow == startRow + 1 &&
-                (endCol == startCol - 1 || endCol == startCol + 1);
-        boolean redMove = endRow == startRow - 1 &&
-                (endCol == startCol - 1 || endCol == startCol + 1);
+    // helper function to get the empty squares reachable by a simple move from any of the pieces
+    private long moveTargets(long pieces, boolean black) {
+        long empty = ~(blackPieces | redPieces);
+        long forward = black ? pieces : pieces & kingPieces;
+        long backward = black ? pieces & kingPieces : pieces;
 
-        if (startPiece == BLACK) {
-            return blackMove;
-        } else if (startPiece == RED) {
-            return redMove;
-        } else { // if start piece is king
-            return blackMove || redMove;
-        }
+        long targets = (forward & NOT_COL_0) << 7 | (forward & NOT_COL_7) << 9;
+        targets |= (backward & NOT_COL_7) >>> 7 | (backward & NOT_COL_0) >>> 9;
+        return targets & empty;
     }
 
-    private boolean canJump(int startRow, int startCol, int endRow, int endCol) {
+    // helper function to get the empty landing squares of any jump from any of the pieces
+    private long jumpTargets(long pieces, boolean black) {
+        long empty = ~(blackPieces | redPieces);
+        long opponent = black ? redPieces : blackPieces;
+        long forward = black ? pieces : pieces & kingPieces;
+        long backward = black ? pieces & kingPieces : pieces;
 
-        // if player is in the middle of a double jump, he must do second jump
+        long targets = ((((forward & NOT_COL_0) << 7) & opponent & NOT_COL_0) << 7) |
+                ((((forward & NOT_COL_7) << 9) & opponent & NOT_COL_7) << 9);
+        targets |= ((((backward & NOT_COL_7) >>> 7) & opponent & NOT_COL_7) >>> 7) |
+                ((((backward & NOT_COL_0) >>> 9) & opponent & NOT_COL_0) >>> 9);
+        return targets & empty;
+    }
+
+    public boolean anyLegalMoves(boolean player) {
+        // only the player whose turn it is can have a legal move
+        if (player != player1) {
+            return false;
+        }
+        if (legalMovesCache < 0) {
+            legalMovesCache = findLegalMove() ? 1 : 0;
+        }
+        return legalMovesCache == 1;
+    }
+
+    // helper function to check the board for any legal move for the player whose turn it is
+    private boolean findLegalMove() {
+        boolean player = player1;
+        long pieces = player ? blackPieces : redPieces;
         if (isJumpAgain) {
-            if (startRow != jumpAgainRow || startCol != jumpAgainCol) {
-                return false;
+            pieces &= bit(jumpAgainRow, jumpAgainCol);
+        }
+        return (moveTargets(pieces, player) | jumpTargets(pieces, player)) != 0;
+    }
+
+    public void undo() {
+        if (recordUndo()) {
+            if (journal != null) {
+                journal.undo();
             }
+            publish();
         }
+    }
 
-        if (endRow >= 8 || endCol >= 8 || endCol < 0 || endRow < 0) {
+    // helper function to undo one step, recording it as an Undo event; false if there was none
+    private boolean recordUndo() {
+        if (undoSize == 0) {
             return false;
         }
-        int startPiece = board[startRow][startCol];
-        if (startPiece == EMPTY) {
-            return false;
+        CheckersEvents.Undo event = new CheckersEvents.Undo();
+        event.begin();
+        undoStep();
+        if (event.shouldCommit()) {
+            event.movesLeft = undoSize;
+            event.commit();
         }
-        if (board[endRow][endCol] != EMPTY) {
-            return false;
+        return true;
+    }
+
+    // helper function to take back the last step in the undo history
+    private void undoStep() {
+        repetitions.remove(getHash());
+        long record = undoHistory[--undoSize];
+        int from = (int) record & 63;
+        int to = (int) (record >>> 6) & 63;
+
+        long promotedBits = record >>> 21 & 0xFFFF;
+        long promoted = (promotedBits & 0xFF) | (promotedBits & 0xFF00) << 48;
+        for (long left = promoted; left != 0; left &= left - 1) {
+            int square = Long.numberOfTrailingZeros(left);
+            int king = getPiece(square >>> 3, square & 7);
+            pieceHash ^= PIECE_KEYS[king][square] ^ PIECE_KEYS[king - 2][square];
+            pieceSquareScore += evaluator.pieceSquare(king - 2, square)
+                    - evaluator.pieceSquare(king, square);
+            pieceCounts[king]--;
+            pieceCounts[king - 2]++;
         }
+        kingPieces &= ~promoted;
 
-        if (player1) {
-            if (startPiece == RED || startPiece == RED_KING) {
-                return false;
+        movePiece(to, from);
+
+        int captured = (int) (record >>> 18) & 7;
+        if (captured != EMPTY) {
+            int square = (int) (record >>> 12) & 63;
+            long middle = 1L << square;
+            if (captured == BLACK || captured == BLACK_KING) {
+                blackPieces |= middle;
+            } else {
+                redPieces |= middle;
             }
-        } else {
-            if (startPiece == BLACK || startPiece == BLACK_KING) {
-                return false;
+            if (captured == BLACK_KING || captured == RED_KING) {
+                kingPieces |= middle;
             }
+            pieceHash ^= PIECE_KEYS[captured][square];
+            pieceSquareScore += evaluator.pieceSquare(captured, square);
+            pieceCounts[captured]++;
         }
 
-        if (startPiece == BLACK) {
-            if (endRow == startRow + 2 && endCol == startCol - 2 &&
-                    (board[startRow + 1][startCol - 1] == RED ||
-                            board[startRow + 1][startCol - 1] == RED_KING)) {
-                return true;
-            }
-            if (endRow == startRow + 2 && endCol == startCol + 2 &&
-                    (board[startRow + 1][startCol + 1] == RED ||
-                            board[startRow + 1][startCol + 1] == RED_KING)) {
-                return true;
-            }
-        } else if (startPiece == RED) {
-            if (endRow == startRow - 2 && endCol == startCol - 2 &&
-                    (board[startRow - 1][startCol - 1] == BLACK ||
-                            board[startRow - 1][startCol - 1] == BLACK_KING)) {
-                return true;
-            }
-            if (endRow == startRow - 2 && endCol == startCol + 2 &&
-                    (board[startRow - 1][startCol + 1] == BLACK ||
-                            board[startRow - 1][startCol + 1] == BLACK_KING)) {
-                return true;
-            }
-        } else if (startPiece == BLACK_KING) {
-            if (endRow == startRow + 2 && endCol == startCol - 2 &&
-                    (board[startRow + 1][startCol - 1] == RED ||
-                            board[startRow + 1][startCol - 1] == RED_KING)) {
-                return true;
-            }
-            if (endRow == startRow + 2 && endCol == startCol + 2 &&
-                    (board[startRow + 1][startCol + 1] == RED ||
-                            board[startRow + 1][startCol + 1] == RED_KING)) {
-                return true;
-            }
-            if (endRow == startRow - 2 && endCol == startCol - 2 &&
-                    (board[startRow - 1][startCol - 1] == RED ||
-                            board[startRow - 1][startCol - 1] == RED_KING)) {
-                return true;
-            }
-            if (endRow == startRow - 2 && endCol == startCol + 2 &&
-                    (board[startRow - 1][startCol + 1] == RED ||
-                            board[startRow - 1][startCol + 1] == RED_KING)) {
-                return true;
-            }
-        } else if (startPiece == RED_KING) {
-            if (endRow == startRow - 2 && endCol == startCol - 2 &&
-                    (board[startRow - 1][startCol - 1] == BLACK ||
-                            board[startRow - 1][startCol - 1] == BLACK_KING)) {
-                return true;
-            }
-            if (endRow == startRow - 2 && endCol == startCol + 2 &&
-                    (board[startRow - 1][startCol + 1] == BLACK ||
-                            board[startRow - 1][startCol + 1] == BLACK_KING)) {
-                return true;
-            }
-            if (endRow == startRow + 2 && endCol == startCol - 2 &&
-                    (board[startRow + 1][startCol - 1] == BLACK ||
-                            board[startRow + 1][startCol - 1] == BLACK_KING)) {
-                return true;
-            }
-            if (endRow == startRow + 2 && endCol == startCol + 2 &&
-                    (board[startRow + 1][startCol + 1] == BLACK ||
-                            board[startRow + 1][startCol + 1] == BLACK_KING)) {
-                return true;
+        int jumpState = (int) (record >>> 37) & 127;
+        isJumpAgain = jumpState != 0;
+        if (isJumpAgain) {
+            jumpAgainRow = (jumpState & 63) / 8;
+            jumpAgainCol = (jumpState & 63) % 8;
+        }
+        player1 = (record >>> 44 & 1) != 0;
+        legalMovesCache = (int) (record >>> 45 & 3) - 1;
+        gameOver = (record >>> 47 & 1) != 0;
+        quietMoves = (int) (record >>> 48);
+        repeats = repetitions.count(getHash());
+    }
+
+    /**
+     * Writes every legal move for the player whose turn it is into moves and
+     * returns how many were written. Jumps are listed first, each one as the
+     * full sequence of captures the piece is forced to make. If a jump is
+     * already in progress only its continuations are listed.
+     *
+     * Nothing is allocated, so this is safe to call from a search loop as long
+     * as moves has room for MAX_MOVES entries.
+     */
+    public int generateMoves(int[] moves) {
+        long own = player1 ? blackPieces : redPieces;
+        long opponent = player1 ? redPieces : blackPieces;
+        if (isJumpAgain) {
+            own &= bit(jumpAgainRow, jumpAgainCol);
+        }
+
+        // any man sitting unpromoted on a back row (only possible through setBoard) is
+        // promoted by the first jump, which always ends the sequence
+        boolean promotionPending = ((redPieces & ROW_0 | blackPieces & ROW_7) & ~kingPieces) != 0;
+
+        int count = 0;
+        long jumpers = own;
+        while (jumpers != 0) {
+            int square = Long.numberOfTrailingZeros(jumpers);
+            jumpers &= jumpers - 1;
+            long start = 1L << square;
+            if (jumpTargets(start, player1) != 0) {
+                long empty = ~(blackPieces | redPieces) | start;
+                count = generateJumps(moves, count, square, square, (kingPieces & start) != 0,
+                        opponent, empty, promotionPending, 0, 0);
             }
+        }
+        if (isJumpAgain) {
+            return count;
+        }
 
+        long empty = ~(blackPieces | redPieces);
+        long forward = player1 ? own : own & kingPieces;
+        long backward = player1 ? own & kingPieces : own;
+        count = addSimpleMoves(moves, count, ((forward & NOT_COL_0) << 7) & empty, 0);
+        count = addSimpleMoves(moves, count, ((forward & NOT_COL_7) << 9) & empty, 1);
+        count = addSimpleMoves(moves, count, ((backward & NOT_COL_0) >>> 9) & empty, 2);
+        count = addSimpleMoves(moves, count, ((backward & NOT_COL_7) >>> 7) & empty, 3);
+        return count;
+    }
+
+    // helper function to add a simple move for every target square reached in one direction
+    private static int addSimpleMoves(int[] moves, int count, long targets, int direction) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves[count++] = (to - DIRECTION_OFFSETS[direction]) | direction << 10;
         }
-        return false;
+        return count;
     }
 
-    private boolean canJumpAgain(int startRow, int startCol) {
+    // helper function to follow every jump sequence from square, depth first
+    private int generateJumps(int[] moves, int count, int origin, int square, boolean king,
+                              long opponent, long empty, boolean promotionPending,
+                              int jumps, int path) {
+        boolean extended = false;
+        if (jumps < MAX_JUMPS && !(jumps > 0 && promotionPending)) {
+            int last = king || !player1 ? 3 : 1;
+            for (int direction = king || player1 ? 0 : 2; direction <= last; direction++) {
+                int land = LANDINGS[square * 4 + direction];
+                if (land < 0) {
+                    continue;
+                }
+                long middle = 1L << NEIGHBORS[square * 4 + direction];
+                if ((opponent & middle) == 0 || (empty & 1L << land) == 0) {
+                    continue;
+                }
+                extended = true;
+                int nextPath = path | direction << (10 + 2 * jumps);
+                if (!king && ((ROW_0 | ROW_7) & 1L << land) != 0) {
+                    // promotion ends the jump
+                    moves[count++] = origin | (jumps + 1) << 6 | nextPath;
+                } else {
+                    count = generateJumps(moves, count, origin, land, king, opponent & ~middle,
+                            empty | middle, promotionPending, jumps + 1, nextPath);
+                }
+            }
+        }
+        if (!extended && jumps > 0) {
+            moves[count++] = origin | jumps << 6 | path;
+        }
+        return count;
+    }
 
-        int startPiece = board[startRow][startCol];
+    /**
+     * Plays a move from generateMoves, one moveOrJump per step, and publishes
+     * the position after the whole move.
+     */
+    public void makeMove(int move) {
+        int from = moveFrom(move);
+        int steps = moveSteps(move);
+        for (int step = 1; step <= steps; step++) {
+            int to = moveSquare(move, step);
+            if (recordStep(from >>> 3, from & 7, to >>> 3, to & 7) && journal != null) {
+                journal.step(from, to);
+            }
+            from = to;
+        }
+        publish();
+    }
 
-        if (startPiece == BLACK) {
-            return canJump(startRow, startCol, startRow + 2, startCol - 2) ||
-                    canJump(startRow, startCol, startRow + 2, startCol + 2);
-        } else if (startPiece == RED) {
-            return canJump(startRow, startCol, startRow - 2, startCol - 2) ||
-                    canJump(startRow, startCol, startRow - 2, startCol + 2);
-        } else if (startPiece == BLACK_KING || startPiece == RED_KING) {
-            return canJump(startRow, startCol, startRow + 2, startCol - 2) ||
-                    canJump(startRow, startCol, startRow + 2, startCol + 2) ||
-                    canJump(startRow, startCol, startRow - 2, startCol + 2) ||
-                    canJump(startRow, startCol, startRow - 2, startCol - 2);
+    /**
+     * Takes back a move played with makeMove.
+     */
+    public void unmakeMove(int move) {
+        for (int step = moveSteps(move); step > 0; step--) {
+            if (recordUndo() && journal != null) {
+                journal.undo();
+            }
         }
-        return false;
+        publish();
     }
 
-    public boolean anyLegalMoves(boolean player) {
-        if (player) {
-            for (int row = 0; row < 8; row++) {
-                for (int col = 0; col < 8; col++) {
-                    if (board[row][col] == BLACK || board[row][col] == BLACK_KING) {
-                        if (canJumpAgain(row, col)) {
-                            return true;
-                        }
-                    }
-                    if (board[row][col] == BLACK) {
-                        if (canMove(row, col, row + 1, col - 1) ||
-                                canMove(row, col, row + 1, col + 1)) {
-                            return true;
-                        }
-                    }
-                    if (board[row][col] == BLACK_KING) {
-                        if (canMove(row, col, row + 1, col - 1) ||
-                                canMove(row, col, row + 1, col + 1) ||
-                                canMove(row, col, row - 1, col + 1) ||
-                                canMove(row, col, row - 1, col - 1)) {
-                            return true;
-                        }
-                    }
-                }
+    /**
+     * Returns the moves played since the last reset, setBoard or setPosition,
+     * oldest first, packed as in generateMoves. The steps of a jump are
+     * joined into one move, so replaying the moves with makeMove (or taking
+     * them back with unmakeMove) gives the same positions.
+     */
+    public int[] getMoveHistory() {
+        int[] moves = new int[undoSize];
+        int count = 0;
+        for (int i = 0; i < undoSize; i++) {
+            long record = undoHistory[i];
+            int from = (int) record & 63;
+            int to = (int) (record >>> 6) & 63;
+            boolean jump = Math.abs(to - from) > 9;
+            int direction = direction(jump ? (to - from) / 2 : to - from);
+            boolean midJump = (record >>> 37 & 64) != 0;
+            if (jump && midJump && count > 0 && moveJumps(moves[count - 1]) > 0
+                    && moveJumps(moves[count - 1]) < MAX_JUMPS && moveTo(moves[count - 1]) == from) {
+                int previous = moves[count - 1];
+                int jumps = moveJumps(previous);
+                moves[count - 1] = previous & ~(15 << 6) | (jumps + 1) << 6
+                        | direction << (10 + 2 * jumps);
+            } else {
+                moves[count++] = from | (jump ? 1 << 6 : 0) | direction << 10;
             }
-        } else {
-            for (int row = 0; row < 8; row++) {
-                for (int col = 0; col < 8; col++) {
-                    if (board[row][col] == RED || board[row][col] == RED_KING) {
-                        if (canJumpAgain(row, col)) {
-                            return true;
-                        }
-                    }
-                    if (board[row][col] == RED) {
-                        if (canMove(row, col, row - 1, col - 1) ||
-                                canMove(row, col, row - 1, col + 1)) {
-                            return true;
-                        }
-                    }
-                    if (board[row][col] == RED_KING) {
-                        if (canMove(row, col, row + 1, col - 1) ||
-                                canMove(row, col, row + 1, col + 1) ||
-                                canMove(row, col, row - 1, col + 1) ||
-                                canMove(row, col, row - 1, col - 1)) {
-                            return true;
-                        }
-                    }
-                }
+        }
+        return Arrays.copyOf(moves, count);
+    }
+
+    // helper function to find the index of a direction offset
+    private static int direction(int offset) {
+        for (int d = 0; d < DIRECTION_OFFSETS.length; d++) {
+            if (DIRECTION_OFFSETS[d] == offset) {
+                return d;
             }
         }
-        return false;
+        throw new IllegalArgumentException("Not a diagonal step: " + offset);
     }
 
-    public void undo() {
-        if (undoList.size() <= 1) {
-            return;
+    public static int moveFrom(int move) {
+        return move & 63;
+    }
+
+    public static int moveJumps(int move) {
+        return (move >>> 6) & 15;
+    }
+
+    // number of moveOrJump steps a packed move is made of
+    public static int moveSteps(int move) {
+        return Math.max(1, moveJumps(move));
+    }
+
+    /**
+     * Returns the square (row * 8 + col) the piece is on after the given number
+     * of steps of the move, where step 0 is the starting square.
+     */
+    public static int moveSquare(int move, int step) {
+        int distance = moveJumps(move) == 0 ? 1 : 2;
+        int square = moveFrom(move);
+        for (int i = 0; i < step; i++) {
+            square += distance * DIRECTION_OFFSETS[(move >>> (10 + 2 * i)) & 3];
         }
-        undoList.removeLast();
-        undoPlayers.removeLast();
-        isJumpAgain = false;
-        player1 = undoPlayers.getLast();
-        int[][] temp = undoList.getLast();
-        setBoard(temp);
+        return square;
+    }
+
+    public static int moveTo(int move) {
+        return moveSquare(move, moveSteps(move));
     }
 
     public void saveGame() {
+        saveGame(PATH_TO_SAVE_GAME);
+    }
+
+    /**
+     * Saves the game to the file at path instead of the usual save file.
+     */
+    public void saveGame(String path) {
+        CheckersEvents.SaveGame event = new CheckersEvents.SaveGame();
+        event.begin();
         StringBuilder s = new StringBuilder();
 
         if (player1) {
@@ -446,50 +1139,69 @@ public class CheckersModel {
 
         for (int row = 0; row < 8; row++) {
             for (int col = 0; col < 8; col++) {
-                s.append(board[row][col]).append(" ");
+                s.append(getPiece(row, col)).append(" ");
             }
             s.append("\n");
         }
 
         try {
-            BufferedWriter bw = new BufferedWriter(new FileWriter(PATH_TO_SAVE_GAME));
+            BufferedWriter bw = new BufferedWriter(new FileWriter(path));
             bw.write(s.toString());
             bw.close();
+            event.succeeded = true;
         } catch (Exception e) {
             System.out.println("File not found or is invalid");
         }
+        event.bytes = s.length();
+        event.commit();
     }
 
     public void loadGame() {
+        loadGame(PATH_TO_LOAD_GAME);
+    }
+
+    /**
+     * Loads the game from the file at path instead of the usual save file.
+     */
+    public void loadGame(String path) {
+        CheckersEvents.LoadGame event = new CheckersEvents.LoadGame();
+        event.begin();
         try {
-            BufferedReader br = new BufferedReader(new FileReader(PATH_TO_LOAD_GAME));
+            BufferedReader br = new BufferedReader(new FileReader(path));
             String line = "";
 
             String firstLine = br.readLine();
+            event.bytes = firstLine.length() + 1;
+            boolean blackToMove;
             if (Integer.parseInt(firstLine) == 1) {
-                player1 = true;
+                blackToMove = true;
             } else if (Integer.parseInt(firstLine) == 2) {
-                player1 = false;
+                blackToMove = false;
             } else {
                 throw new IllegalArgumentException();
             }
 
+            int[][] loaded = new int[8][8];
             int row = 0;
             while ((line = br.readLine()) != null) {
+                event.bytes += line.length() + 1;
                 String[] cols = line.split(" ");
                 for (int col = 0; col < 8; col++) {
                     String c = cols[col];
-                    board[row][col] = Integer.parseInt(c);
+                    loaded[row][col] = Integer.parseInt(c);
                 }
                 row++;
             }
             br.close();
-            undoList = new LinkedList<>();
-            undoPlayers = new LinkedList<>();
-            addUndoStep();
+
+            // nothing changes until the whole file has been read
+            player1 = blackToMove;
+            setBoard(loaded);
+            event.succeeded = true;
         } catch (Exception e) {
             System.out.println("File not found or is invalid");
         }
+        event.commit();
     }
 
     /**
@@ -499,5 +1211,14 @@ public class CheckersModel {
      */
     public static void main(String[] args) {
         CheckersModel cm = new CheckersModel();
+        SearchEngine engine = new SearchEngine(8, 200000);
+
+        // the draw rules make sure the game ends
+        int moves = 0;
+        while (cm.checkWinner() == 0) {
+            cm.makeMove(engine.search(cm).getMove());
+            moves++;
+        }
+        System.out.println("Winner: " + cm.checkWinner() + " after " + moves + " moves");
     }
 }
@@ -0,0 +1,231 @@
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class runs a SearchEngine on a background thread, so a user interface
+ * can ask for the computer's move without waiting for it.
+ *
+ * think searches a copy of the model, so the caller may keep using (or
+ * change) its own model while the search runs. Progress after each
+ * completed depth and the final result are handed to a Listener through the
+ * callback Executor given to the constructor (SwingUtilities::invokeLater for
+ * a Swing board), and never for a search that has been cancelled, even if
+ * the callback was already queued when cancel was called on that executor's
+ * thread.
+ *
+ * While it is the opponent's turn the player ponders: it guesses the
+ * opponent's reply (the move the last search expected, from the shared
+ * TranspositionTable) and searches the position after it. If the opponent
+ * plays that move, the next think continues the pondering search instead of
+ * starting again, and answers at once if it has already finished. Any other
+ * reply still finds the table full of useful results.
+ */
+public class ComputerPlayer {
+
+    /**
+     * Receives the progress and the result of a search, on the callback
+     * executor.
+     */
+    public interface Listener {
+        void progress(SearchResult result);
+
+        void moveFound(SearchResult result);
+    }
+
+    private static final int GUESS_DEPTH = 4;
+
+    private final SearchEngine engine;
+    private final SearchEngine guesser;
+    private final Executor callbacks;
+    private final ExecutorService worker;
+
+    // the search asked for last, null once cancelled, guarded by this
+    private Task current;
+    // the search the worker is running, only used on the worker thread
+    private Task running;
+
+    /**
+     * Creates a player that searches at most maxDepth moves ahead, or
+     * nodeLimit positions, and calls listeners through callbacks.
+     */
+    public ComputerPlayer(int maxDepth, long nodeLimit, Executor callbacks) {
+        TranspositionTable table = new TranspositionTable(SearchEngine.DEFAULT_TABLE_MEGABYTES);
+        engine = new SearchEngine(maxDepth, nodeLimit, table);
+        guesser = new SearchEngine(Math.min(GUESS_DEPTH, maxDepth), nodeLimit, table);
+        this.callbacks = callbacks;
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "computer-player");
+            t.setDaemon(true);
+            return t;
+        });
+        engine.setProgressListener(this::reportProgress);
+    }
+
+    public void setOpeningBook(OpeningBook book) {
+        engine.setOpeningBook(book);
+    }
+
+    public void setTablebase(Tablebase tablebase) {
+        engine.setTablebase(tablebase);
+        guesser.setTablebase(tablebase);
+    }
+
+    /**
+     * Starts searching for the best move for the player whose turn it is in
+     * model, and gives the result to listener. A search already running is
+     * cancelled, unless it is pondering this very position.
+     */
+    public synchronized void think(CheckersModel model, Listener listener) {
+        Task task = current;
+        if (task != null && task.pondering && !task.stop.get()
+                && task.position == model.getHash()) {
+            // the opponent played the expected move
+            task.listener = listener;
+            if (task.result != null) {
+                deliver(task, task.result);
+            }
+            return;
+        }
+        cancel();
+
+        Task next = new Task(model.getHash(), false);
+        next.listener = listener;
+        current = next;
+        CheckersModel copy = new CheckersModel(model);
+        worker.execute(() -> {
+            running = next;
+            SearchResult result = engine.bookMove(copy);
+            if (result == null) {
+                engine.getTable().newSearch();
+                result = engine.search(copy, 1, next.stop);
+            }
+            finish(next, result);
+        });
+    }
+
+    /**
+     * Starts thinking during the opponent's turn in model. Does nothing if
+     * the player is already pondering from this position.
+     */
+    public synchronized void ponder(CheckersModel model) {
+        Task task = current;
+        if (task != null && task.pondering && !task.stop.get() && task.from == model.getHash()) {
+            return;
+        }
+        cancel();
+
+        Task next = new Task(model.getHash(), true);
+        current = next;
+        CheckersModel copy = new CheckersModel(model);
+        boolean opponent = model.getCurrentPlayer();
+        worker.execute(() -> {
+            running = next;
+            int expected = expectedMove(copy, next);
+            if (expected == -1 || next.stop.get()) {
+                return;
+            }
+            copy.makeMove(expected);
+            if (copy.getCurrentPlayer() == opponent) {
+                // a capture still in progress: the opponent is not done yet
+                return;
+            }
+            synchronized (this) {
+                next.position = copy.getHash();
+            }
+            engine.getTable().newSearch();
+            finish(next, engine.search(copy, 1, next.stop));
+        });
+    }
+
+    /**
+     * Stops the search running, if any. No more callbacks are made for it.
+     */
+    public synchronized void cancel() {
+        if (current != null) {
+            current.stop.set(true);
+            current = null;
+        }
+    }
+
+    /**
+     * Cancels any search and stops the background thread. The player cannot
+     * be used afterwards.
+     */
+    public void shutdown() {
+        cancel();
+        worker.shutdownNow();
+    }
+
+    // helper function to guess the opponent's move: the table's if it is legal, else a short search
+    private int expectedMove(CheckersModel model, Task task) {
+        int[] moves = new int[CheckersModel.MAX_MOVES];
+        int count = model.generateMoves(moves);
+        if (count == 0) {
+            return -1;
+        }
+        long entry = engine.getTable().probe(model.getHash());
+        if (entry != 0) {
+            int move = TranspositionTable.entryMove(entry);
+            for (int i = 0; i < count; i++) {
+                if (moves[i] == move) {
+                    return move;
+                }
+            }
+        }
+        if (count == 1) {
+            return moves[0];
+        }
+        return guesser.search(model, GUESS_DEPTH, task.stop).getMove();
+    }
+
+    // called by the engine on the worker thread after each completed depth
+    private void reportProgress(SearchResult result) {
+        Task task = running;
+        if (task.listener != null && !task.stop.get()) {
+            Listener listener = task.listener;
+            callbacks.execute(() -> {
+                if (!task.stop.get()) {
+                    listener.progress(result);
+                }
+            });
+        }
+    }
+
+    private synchronized void finish(Task task, SearchResult result) {
+        if (task.stop.get()) {
+            return;
+        }
+        task.result = result;
+        if (task.listener != null) {
+            deliver(task, result);
+        }
+    }
+
+    private void deliver(Task task, SearchResult result) {
+        Listener listener = task.listener;
+        callbacks.execute(() -> {
+            if (!task.stop.get()) {
+                listener.moveFound(result);
+            }
+        });
+    }
+
+    // one search, for the player's own move or while pondering
+    private static class Task {
+        final long from;
+        final boolean pondering;
+        final AtomicBoolean stop = new AtomicBoolean();
+        // the position searched: while pondering, set once the opponent's move is guessed
+        long position;
+        volatile Listener listener;
+        SearchResult result;
+
+        Task(long from, boolean pondering) {
+            this.from = from;
+            this.pondering = pondering;
+            position = from;
+        }
+    }
+}
@@ -0,0 +1,491 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * This class is a model for draughts on any board and rule set in Rules,
+ * including 10x10 international draughts.
+ *
+ * The position is three 64-bit masks laid out by BoardGeometry, so a 10x10
+ * board costs the same per move as an 8x8 one: simple moves for every man
+ * are found with one shift per direction, shifts pick out the pieces that
+ * may capture, and only their captures are followed square by square, as
+ * in CheckersModel. Moves are whole moves (every capture of a
+ * sequence at once), made and unmade with makeMove/unmakeMove, and nothing
+ * is allocated while generating or playing them.
+ *
+ * Black starts on the top rows (row 0 upwards) and moves first, as in
+ * CheckersModel. With Rules.ENGLISH this class plays exactly the moves
+ * CheckersModel does, which DraughtsModelTest checks; CheckersModel stays the model
+ * the board, the engine and the save files use.
+ */
+public class DraughtsModel {
+
+    // Moves from generateMoves are packed into a long:
+    //   bits 0-5    square the piece moves from (a BoardGeometry bit)
+    //   bits 6-11   square it ends on
+    //   bits 12-61  the captured squares, BoardGeometry.compress'ed
+    // Under INTERNATIONAL rules two capture paths that take the same pieces
+    // and end on the same square are the same move; under ENGLISH rules
+    // (like CheckersModel) there is at most one such path anyway.
+    public static final int MAX_MOVES = 256;
+
+    private static final int CAPTURED_SHIFT = 12;
+
+    // times a position must occur for the game to be drawn
+    private static final int REPETITIONS_TO_DRAW = 3;
+
+    // Zobrist keys: one per piece type and square, and one for red to move,
+    // with a fixed seed so hashes are stable between runs
+    private static final long[][] PIECE_KEYS = new long[5][64];
+    private static final long RED_TO_MOVE_KEY;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x6472617567687473L);
+        for (int piece = CheckersModel.BLACK; piece <= CheckersModel.RED_KING; piece++) {
+            for (int square = 0; square < 64; square++) {
+                PIECE_KEYS[piece][square] = random.nextLong();
+            }
+        }
+        RED_TO_MOVE_KEY = random.nextLong();
+    }
+
+    private final Rules rules;
+    private final BoardGeometry geometry;
+    private final long blackStart;
+    private final long redStart;
+
+    private long blackPieces;
+    private long redPieces;
+    private long kingPieces;
+    private boolean player1 = true;
+    private long hash;
+
+    // Undo history, one entry per move: the move, the hash before it, the
+    // kings it captured, and the quiet move count before it (shifted left
+    // one) with bit 0 set if the move crowned a man
+    private long[] undoMoves = new long[64];
+    private long[] undoHashes = new long[64];
+    private long[] undoKings = new long[64];
+    private int[] undoInfo = new int[64];
+    private int undoSize;
+
+    // draw rules, as in CheckersModel
+    private final RepetitionTable repetitions = new RepetitionTable();
+    private int repeats;
+    private int quietMoves;
+    private int drawMoves = CheckersModel.DEFAULT_DRAW_MOVES;
+
+    // most pieces taken by any capture found so far, while generateMoves runs
+    private int mostCaptured;
+
+    // reused by checkWinner to look for a legal move
+    private final long[] winnerMoves = new long[MAX_MOVES];
+
+    /**
+     * Constructor sets up a new game under the rules.
+     */
+    public DraughtsModel(Rules rules) {
+        this.rules = rules;
+        geometry = rules.getGeometry();
+        long black = 0;
+        long red = 0;
+        for (int row = 0; row < rules.getStartRows(); row++) {
+            black |= geometry.getRow(row);
+            red |= geometry.getRow(geometry.getSize() - 1 - row);
+        }
+        blackStart = black;
+        redStart = red;
+        reset();
+    }
+
+    /**
+     * Starts a new game.
+     */
+    public void reset() {
+        setPosition(blackStart, redStart, 0, true);
+    }
+
+    /**
+     * Sets up a position, as masks of BoardGeometry bits, and clears the
+     * history. Kings must also be set in blackPieces or redPieces.
+     */
+    public void setPosition(long blackPieces, long redPieces, long kingPieces, boolean player1) {
+        long squares = geometry.getSquares();
+        if ((blackPieces & ~squares) != 0 || (redPieces & ~squares) != 0
+                || (blackPieces & redPieces) != 0
+                || (kingPieces & ~(blackPieces | redPieces)) != 0) {
+            throw new IllegalArgumentException("Not a position on a "
+                    + geometry.getSize() + "x" + geometry.getSize() + " board");
+        }
+        this.blackPieces = blackPieces;
+        this.redPieces = redPieces;
+        this.kingPieces = kingPieces;
+        this.player1 = player1;
+        hash = player1 ? 0 : RED_TO_MOVE_KEY;
+        for (long pieces = blackPieces | redPieces; pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            hash ^= PIECE_KEYS[pieceAt(square)][square];
+        }
+        undoSize = 0;
+        quietMoves = 0;
+        repetitions.clear();
+        repeats = repetitions.add(hash);
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Returns true if it is black's turn.
+     */
+    public boolean getCurrentPlayer() {
+        return player1;
+    }
+
+    public long getBlackPieces() {
+        return blackPieces;
+    }
+
+    public long getRedPieces() {
+        return redPieces;
+    }
+
+    public long getKingPieces() {
+        return kingPieces;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the piece at row, col as a CheckersModel piece code.
+     */
+    public int getPiece(int row, int col) {
+        int square = geometry.bit(row, col);
+        return square < 0 ? CheckersModel.EMPTY : pieceAt(square);
+    }
+
+    // helper function to find the piece code on a square
+    private int pieceAt(int square) {
+        long bit = 1L << square;
+        boolean king = (kingPieces & bit) != 0;
+        if ((blackPieces & bit) != 0) {
+            return king ? CheckersModel.BLACK_KING : CheckersModel.BLACK;
+        } else if ((redPieces & bit) != 0) {
+            return king ? CheckersModel.RED_KING : CheckersModel.RED;
+        }
+        return CheckersModel.EMPTY;
+    }
+
+    /**
+     * Returns how many moves have been made since the last reset.
+     */
+    public int getMoveCount() {
+        return undoSize;
+    }
+
+    /**
+     * Returns 0 while the game goes on, 1 if BLACK won, 2 if RED won, or
+     * CheckersModel.DRAW. A player who cannot move loses, even in a
+     * position that would otherwise be a draw, as in CheckersModel.
+     */
+    public int checkWinner() {
+        if (generateMoves(winnerMoves) == 0) {
+            return player1 ? 2 : 1;
+        }
+        if (isDraw()) {
+            return CheckersModel.DRAW;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns true if the position has occurred three times, or if
+     * getDrawMoves moves in a row have been king moves without a capture.
+     */
+    public boolean isDraw() {
+        return repeats >= REPETITIONS_TO_DRAW || drawMoves > 0 && quietMoves >= drawMoves;
+    }
+
+    public int getDrawMoves() {
+        return drawMoves;
+    }
+
+    /**
+     * Sets how many quiet moves in a row draw the game, or 0 for no limit.
+     */
+    public void setDrawMoves(int drawMoves) {
+        if (drawMoves < 0) {
+            throw new IllegalArgumentException("Draw moves must not be negative: " + drawMoves);
+        }
+        this.drawMoves = drawMoves;
+    }
+
+    /**
+     * Writes every legal move for the player whose turn it is into moves and
+     * returns how many were written. Captures come first. If the rules make
+     * capturing compulsory and there is a capture, only captures are listed,
+     * and with majority capture only those that take the most pieces.
+     *
+     * Nothing is allocated, so this is safe to call from a search loop as long
+     * as moves has room for MAX_MOVES entries.
+     */
+    public int generateMoves(long[] moves) {
+        long own = player1 ? blackPieces : redPieces;
+        long opponent = player1 ? redPieces : blackPieces;
+        long empty = geometry.getSquares() & ~(blackPieces | redPieces);
+
+        int count = 0;
+        mostCaptured = 0;
+        for (long pieces = capturers(own, opponent, empty); pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            count = generateCaptures(moves, count, square, square, (kingPieces & 1L << square) != 0,
+                    opponent, 0, empty | 1L << square, 0);
+        }
+        if (count > 0 && rules.isCaptureCompulsory()) {
+            return count;
+        }
+
+        // men step forwards only, which is down the board for black
+        int left = player1 ? BoardGeometry.DOWN_LEFT : BoardGeometry.UP_LEFT;
+        int right = player1 ? BoardGeometry.DOWN_RIGHT : BoardGeometry.UP_RIGHT;
+        long men = own & ~kingPieces;
+        count = addSimpleMoves(moves, count, geometry.shift(men, left) & empty,
+                geometry.getShift(left));
+        count = addSimpleMoves(moves, count, geometry.shift(men, right) & empty,
+                geometry.getShift(right));
+
+        long kings = own & kingPieces;
+        if (kings != 0) {
+            for (int direction = 0; direction < 4; direction++) {
+                int shift = geometry.getShift(direction);
+                long reached = geometry.shift(kings, direction) & empty;
+                count = addSimpleMoves(moves, count, reached, shift);
+                // flying kings go on until they run into a piece or the edge
+                for (int distance = 2; rules.hasFlyingKings() && reached != 0; distance++) {
+                    reached = geometry.shift(reached, direction) & empty;
+                    count = addSimpleMoves(moves, count, reached, distance * shift);
+                }
+            }
+        }
+        return count;
+    }
+
+    // helper function to narrow own down to the pieces that may have a capture: men (and
+    // kings that do not fly) with an opponent next to them and an empty square beyond,
+    // found a direction at a time with shifts, and every flying king
+    private long capturers(long own, long opponent, long empty) {
+        long kings = own & kingPieces;
+        long men = own & ~kingPieces;
+        long result = rules.hasFlyingKings() ? kings : 0;
+        long shortPieces = rules.hasFlyingKings() ? men : own;
+        for (int direction = 0; direction < 4; direction++) {
+            boolean forward = direction < 2 == player1;
+            long pieces = forward || rules.menCaptureBackwards()
+                    ? shortPieces : shortPieces & kings;
+            // walk back from the empty squares: 3 - direction is the opposite direction
+            int back = 3 - direction;
+            result |= geometry.shift(geometry.shift(empty, back) & opponent, back) & pieces;
+        }
+        return result;
+    }
+
+    // helper function to add a simple move for every target square the same distance away
+    private static int addSimpleMoves(long[] moves, int count, long targets, int offset) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves[count++] = (to - offset) | (long) to << 6;
+        }
+        return count;
+    }
+
+    // helper function to follow every capture sequence from square, depth first.
+    // opponent holds the pieces that may still be captured, and empty the squares
+    // that may be jumped onto (the moving piece's own square counts as empty)
+    private int generateCaptures(long[] moves, int count, int origin, int square, boolean king,
+                                 long opponent, long captured, long empty, int taken) {
+        boolean extended = false;
+        boolean flying = king && rules.hasFlyingKings();
+        for (int direction = 0; direction < 4; direction++) {
+            boolean forward = direction < 2 == player1;
+            if (!king && !forward && !rules.menCaptureBackwards()) {
+                continue;
+            }
+            int middle = geometry.next(square, direction);
+            while (flying && middle >= 0 && (empty & 1L << middle) != 0) {
+                middle = geometry.next(middle, direction);
+            }
+            if (middle < 0 || (opponent & 1L << middle) == 0) {
+                continue;
+            }
+            long middleBit = 1L << middle;
+            long nextEmpty = rules.removesCapturedAtOnce() ? empty | middleBit : empty;
+            for (int land = geometry.next(middle, direction);
+                 land >= 0 && (empty & 1L << land) != 0;
+                 land = flying ? geometry.next(land, direction) : -1) {
+                extended = true;
+                if (!king && rules.crowningEndsCapture() && crowns(land)) {
+                    count = addCapture(moves, count, origin, land, captured | middleBit, taken + 1);
+                } else {
+                    count = generateCaptures(moves, count, origin, land, king,
+                            opponent & ~middleBit, captured | middleBit, nextEmpty, taken + 1);
+                }
+            }
+        }
+        if (!extended && taken > 0) {
+            count = addCapture(moves, count, origin, square, captured, taken);
+        }
+        return count;
+    }
+
+    // helper function to add a finished capture, keeping only the longest ones under majority
+    // capture and dropping a second path that takes the same pieces to the same square
+    private int addCapture(long[] moves, int count, int from, int to, long captured, int taken) {
+        if (rules.isMajorityCapture()) {
+            if (taken < mostCaptured) {
+                return count;
+            }
+            if (taken > mostCaptured) {
+                mostCaptured = taken;
+                count = 0;
+            }
+        }
+        long move = from | (long) to << 6 | geometry.compress(captured) << CAPTURED_SHIFT;
+        if (!rules.removesCapturedAtOnce()) {
+            for (int i = count - 1; i >= 0; i--) {
+                if (moves[i] == move) {
+                    return count;
+                }
+            }
+        }
+        moves[count++] = move;
+        return count;
+    }
+
+    // helper function to check if a man of the player to move is crowned on a square
+    private boolean crowns(int square) {
+        int row = geometry.row(square);
+        return player1 ? row == geometry.getSize() - 1 : row == 0;
+    }
+
+    public static int getFrom(long move) {
+        return (int) (move & 63);
+    }
+
+    public static int getTo(long move) {
+        return (int) (move >>> 6 & 63);
+    }
+
+    /**
+     * Returns the captured squares of a move, as a mask of BoardGeometry bits.
+     */
+    public long getCaptured(long move) {
+        return geometry.expand(move >>> CAPTURED_SHIFT);
+    }
+
+    /**
+     * Plays a move from generateMoves.
+     */
+    public void makeMove(long move) {
+        if (undoSize == undoMoves.length) {
+            int length = undoSize * 2;
+            undoMoves = Arrays.copyOf(undoMoves, length);
+            undoHashes = Arrays.copyOf(undoHashes, length);
+            undoKings = Arrays.copyOf(undoKings, length);
+            undoInfo = Arrays.copyOf(undoInfo, length);
+        }
+        int from = getFrom(move);
+        int to = getTo(move);
+        long captured = getCaptured(move);
+        int piece = pieceAt(from);
+        boolean king = piece >= CheckersModel.BLACK_KING;
+
+        undoMoves[undoSize] = move;
+        undoHashes[undoSize] = hash;
+        undoKings[undoSize] = captured & kingPieces;
+        int info = quietMoves << 1;
+
+        // the moving piece first: from == to after a capture that ends where it began
+        long moved = 1L << from ^ 1L << to;
+        hash ^= PIECE_KEYS[piece][from];
+        for (long pieces = captured; pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            hash ^= PIECE_KEYS[pieceAt(square)][square];
+        }
+        if (player1) {
+            blackPieces ^= moved;
+            redPieces &= ~captured;
+        } else {
+            redPieces ^= moved;
+            blackPieces &= ~captured;
+        }
+        kingPieces &= ~captured;
+        if (king) {
+            kingPieces ^= moved;
+        } else if (crowns(to)) {
+            kingPieces |= 1L << to;
+            piece += CheckersModel.BLACK_KING - CheckersModel.BLACK;
+            info |= 1;
+        }
+        hash ^= PIECE_KEYS[piece][to];
+        undoInfo[undoSize++] = info;
+
+        quietMoves = king && captured == 0 ? quietMoves + 1 : 0;
+        player1 = !player1;
+        hash ^= RED_TO_MOVE_KEY;
+        repeats = repetitions.add(hash);
+    }
+
+    /**
+     * Takes back the last move made with makeMove.
+     */
+    public void unmakeMove() {
+        if (undoSize == 0) {
+            throw new IllegalStateException("No move to unmake");
+        }
+        repetitions.remove(hash);
+        undoSize--;
+        long move = undoMoves[undoSize];
+        int info = undoInfo[undoSize];
+        int from = getFrom(move);
+        int to = getTo(move);
+        long captured = getCaptured(move);
+        long moved = 1L << from ^ 1L << to;
+
+        player1 = !player1;
+        if ((info & 1) != 0) {
+            kingPieces &= ~(1L << to);
+        } else if ((kingPieces & 1L << to) != 0) {
+            kingPieces ^= moved;
+        }
+        kingPieces |= undoKings[undoSize];
+        if (player1) {
+            blackPieces ^= moved;
+            redPieces |= captured;
+        } else {
+            redPieces ^= moved;
+            blackPieces |= captured;
+        }
+        hash = undoHashes[undoSize];
+        quietMoves = info >>> 1;
+        repeats = repetitions.count(hash);
+    }
+
+    /**
+     * Returns a move written with the standard square numbers (1 for the
+     * first dark square of row 0, counting along each row), as "from-to"
+     * for a simple move and "fromxto" for a capture.
+     */
+    public String toString(long move) {
+        int from = Long.bitCount(geometry.getSquares() & (1L << getFrom(move)) - 1) + 1;
+        int to = Long.bitCount(geometry.getSquares() & (1L << getTo(move)) - 1) + 1;
+        return from + (move >>> CAPTURED_SHIFT != 0 ? "x" : "-") + to;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * This class holds the weights CheckersModel uses to score a position.
+ *
+ * The score adds up, for every piece, its material value and a bonus for
+ * where it stands: men gain advancement for every row they have moved
+ * forward and a back-rank bonus while they still guard their own first row,
+ * and kings gain kingMobility for every empty square next to them. Black's
+ * pieces count for black and red's against.
+ *
+ * Everything except king mobility depends only on which piece is on which
+ * square, so it is kept in piece-square tables that CheckersModel adds and
+ * subtracts from a running total as pieces move, are captured and promote.
+ * King mobility is counted from the piece masks when the score is asked for.
+ */
+public class Evaluator {
+
+    public static final Evaluator DEFAULT = new Evaluator(100, 160, 4, 10, 3);
+
+    private static final long NOT_COL_0 = 0xFEFEFEFEFEFEFEFEL;
+    private static final long NOT_COL_7 = 0x7F7F7F7F7F7F7F7FL;
+
+    private final int manValue;
+    private final int kingValue;
+    private final int advancement;
+    private final int backRank;
+    private final int kingMobility;
+
+    // value of each piece on each square, positive for black and negative for red
+    private final int[][] pieceSquare = new int[5][64];
+
+    public Evaluator(int manValue, int kingValue, int advancement, int backRank,
+                     int kingMobility) {
+        this.manValue = manValue;
+        this.kingValue = kingValue;
+        this.advancement = advancement;
+        this.backRank = backRank;
+        this.kingMobility = kingMobility;
+
+        for (int square = 0; square < 64; square++) {
+            int row = square / 8;
+            pieceSquare[CheckersModel.BLACK][square] = manValue + advancement * row
+                    + (row == 0 ? backRank : 0);
+            pieceSquare[CheckersModel.RED][square] = -(manValue + advancement * (7 - row)
+                    + (row == 7 ? backRank : 0));
+            pieceSquare[CheckersModel.BLACK_KING][square] = kingValue;
+            pieceSquare[CheckersModel.RED_KING][square] = -kingValue;
+        }
+    }
+
+    public int getManValue() {
+        return manValue;
+    }
+
+    public int getKingValue() {
+        return kingValue;
+    }
+
+    public int getAdvancement() {
+        return advancement;
+    }
+
+    public int getBackRank() {
+        return backRank;
+    }
+
+    public int getKingMobility() {
+        return kingMobility;
+    }
+
+    /**
+     * Returns the piece-square value of a piece (as in getPiece) on a square
+     * (row * 8 + col), positive for black.
+     */
+    int pieceSquare(int piece, int square) {
+        return pieceSquare[piece][square];
+    }
+
+    /**
+     * Returns the king mobility term for the given masks, positive for black.
+     */
+    int mobility(long black, long red, long kings) {
+        if (kingMobility == 0 || kings == 0) {
+            return 0;
+        }
+        long empty = ~(black | red);
+        return kingMobility * (neighbors(black & kings, empty) - neighbors(red & kings, empty));
+    }
+
+    // helper function to count the empty squares next to each king, over all kings
+    private static int neighbors(long kings, long empty) {
+        return Long.bitCount(kings << 7 & NOT_COL_7 & empty)
+                + Long.bitCount(kings << 9 & NOT_COL_0 & empty)
+                + Long.bitCount(kings >>> 7 & NOT_COL_0 & empty)
+                + Long.bitCount(kings >>> 9 & NOT_COL_7 & empty);
+    }
+}
@@ -0,0 +1,249 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class reads and writes archives of finished games in a compact
+ * binary format.
+ *
+ * An archive is a 32 byte header, then every position of every game as a
+ * fixed-width 25 byte record, then an index giving the number of the first
+ * position of each game. A position record is the black, red and king masks
+ * from CheckersModel (8 bytes each) and a flag byte: bit 7 set when black is
+ * to move, bit 6 set when a jump is in progress, and bits 0-5 the square of
+ * the jumping piece.
+ *
+ * The Reader maps the file into memory, so loading a position is an offset
+ * calculation and a copy, with no parsing.
+ */
+public class GameArchive {
+
+    public static final int MAGIC = 0x434B5241; // "CKRA"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 32;
+    public static final int POSITION_BYTES = 25;
+
+    static final int BLACK_TO_MOVE = 0x80;
+    static final int JUMP_AGAIN = 0x40;
+
+    // the position records are mapped in pieces of at most this many records
+    private static final int RECORDS_PER_SEGMENT = (1 << 30) / POSITION_BYTES;
+
+    // helper function to pack the model's turn and jump state into a flag byte
+    static byte flags(CheckersModel cm) {
+        int flags = cm.getCurrentPlayer() ? BLACK_TO_MOVE : 0;
+        if (cm.getIsJumpAgain()) {
+            flags |= JUMP_AGAIN | cm.getJumpAgainRow() * 8 + cm.getJumpAgainCol();
+        }
+        return (byte) flags;
+    }
+
+    /**
+     * Writes an archive one position at a time. Call endGame after the last
+     * position of each game, and close to write the index (close also ends a
+     * game that is still open).
+     */
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(POSITION_BYTES * 4096)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        private long[] gameStarts = new long[1024];
+        private int gameCount;
+        private long positionCount;
+
+        public Writer(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            channel.position(HEADER_BYTES);
+        }
+
+        /**
+         * Adds the model's current position to the game being written.
+         */
+        public void addPosition(CheckersModel cm) throws IOException {
+            if (buffer.remaining() < POSITION_BYTES) {
+                flush();
+            }
+            buffer.putLong(cm.getBlackPieces());
+            buffer.putLong(cm.getRedPieces());
+            buffer.putLong(cm.getKingPieces());
+            buffer.put(flags(cm));
+            positionCount++;
+        }
+
+        /**
+         * Ends the game being written. The next position starts a new game.
+         */
+        public void endGame() {
+            if (gameCount + 1 == gameStarts.length) {
+                gameStarts = Arrays.copyOf(gameStarts, gameStarts.length * 2);
+            }
+            gameStarts[++gameCount] = positionCount;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (positionCount > gameStarts[gameCount]) {
+                    endGame();
+                }
+                flush();
+
+                // index: the first position of each game, then the total
+                long indexOffset = HEADER_BYTES + positionCount * POSITION_BYTES;
+                for (int i = 0; i <= gameCount; i++) {
+                    if (buffer.remaining() < 8) {
+                        flush();
+                    }
+                    buffer.putLong(gameStarts[i]);
+                }
+                flush();
+
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putInt(gameCount);
+                buffer.putInt(0);
+                buffer.putLong(positionCount);
+                buffer.putLong(indexOffset);
+                buffer.flip();
+                channel.position(0);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads games from an archive through memory-mapped buffers. A Reader can
+     * be shared by threads as long as none of them closes it.
+     */
+    public static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final MappedByteBuffer index;
+        private final MappedByteBuffer[] segments;
+        private final int gameCount;
+        private final long positionCount;
+
+        public Reader(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                if (channel.size() < HEADER_BYTES) {
+                    throw new IOException("Not a game archive: " + path);
+                }
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        HEADER_BYTES);
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                    throw new IOException("Not a version " + VERSION + " game archive: " + path);
+                }
+                gameCount = header.getInt(8);
+                positionCount = header.getLong(16);
+                long indexOffset = header.getLong(24);
+                if (gameCount < 0 || positionCount < 0
+                        || positionCount > channel.size() / POSITION_BYTES) {
+                    throw new IOException("Game archive is corrupt: " + gameCount + " games, "
+                            + positionCount + " positions in " + path);
+                }
+                if (indexOffset != HEADER_BYTES + positionCount * POSITION_BYTES
+                        || channel.size() < indexOffset + 8L * (gameCount + 1)) {
+                    throw new IOException("Game archive is truncated: " + path);
+                }
+
+                index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset,
+                        8L * (gameCount + 1));
+                index.order(ByteOrder.LITTLE_ENDIAN);
+
+                int segmentCount = (int) ((positionCount + RECORDS_PER_SEGMENT - 1)
+                        / RECORDS_PER_SEGMENT);
+                segments = new MappedByteBuffer[segmentCount];
+                for (int i = 0; i < segmentCount; i++) {
+                    long first = (long) i * RECORDS_PER_SEGMENT;
+                    long records = Math.min(RECORDS_PER_SEGMENT, positionCount - first);
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            HEADER_BYTES + first * POSITION_BYTES, records * POSITION_BYTES);
+                    segments[i].order(ByteOrder.LITTLE_ENDIAN);
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        public int getGameCount() {
+            return gameCount;
+        }
+
+        public long getPositionCount() {
+            return positionCount;
+        }
+
+        /**
+         * Returns the number of positions stored for the given game.
+         */
+        public int getGameLength(int game) {
+            return (int) (gameStart(game + 1) - gameStart(game));
+        }
+
+        private long gameStart(int game) {
+            if (game < 0 || game > gameCount) {
+                throw new IndexOutOfBoundsException("No game " + game + " in archive");
+            }
+            return index.getLong(8 * game);
+        }
+
+        /**
+         * Sets up the model at the given position (0 is the first) of the
+         * given game. The model's undo history starts at that position.
+         */
+        public void loadPosition(int game, int position, CheckersModel cm) {
+            if (position < 0 || position >= getGameLength(game)) {
+                throw new IndexOutOfBoundsException("No position " + position + " in game "
+                        + game);
+            }
+            loadPosition(gameStart(game) + position, cm);
+        }
+
+        /**
+         * Sets up the model at the final position of the given game.
+         */
+        public void loadGame(int game, CheckersModel cm) {
+            loadPosition(game, getGameLength(game) - 1, cm);
+        }
+
+        /**
+         * Sets up the model at a position counted across the whole archive.
+         */
+        public void loadPosition(long position, CheckersModel cm) {
+            MappedByteBuffer segment = segments[(int) (position / RECORDS_PER_SEGMENT)];
+            int offset = (int) (position % RECORDS_PER_SEGMENT) * POSITION_BYTES;
+            int flags = segment.get(offset + 24);
+            cm.setPosition(segment.getLong(offset), segment.getLong(offset + 8),
+                    segment.getLong(offset + 16), (flags & BLACK_TO_MOVE) != 0,
+                    (flags & JUMP_AGAIN) != 0 ? flags & 63 : -1);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
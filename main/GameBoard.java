@@ -2,6 +2,9 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * This class instantiates a CheckersModel object, which is the model for the game.
@@ -15,6 +18,18 @@ import java.awt.event.MouseEvent;
  * In a Model-View-Controller framework, GameBoard stores the model as a field
  * and acts as both the controller (with a MouseListener) and the view (with
  * its paintComponent method and the status JLabel).
+ *
+ * The empty board and each kind of piece are drawn once into images, so
+ * painting is just copying images, with nothing allocated. After a click only
+ * the squares that changed (and the old and new highlight) are repainted.
+ *
+ * With a computer opponent, RED's moves come from a ComputerPlayer, which
+ * searches on its own thread and reports back on the event dispatch thread,
+ * so the board stays responsive while it thinks. Undo, reset and load cancel
+ * the search.
+ *
+ * Every move and undo is recorded in a MoveJournal as it happens, so resume
+ * picks up the last game, undo history and all, even after a crash.
  */
 
 public class GameBoard extends JPanel {
@@ -24,9 +39,34 @@ public class GameBoard extends JPanel {
 
     private Point prev;
 
+    private ComputerPlayer computer; // null when two people are playing
+
     // Game constants
     public static final int BOARD_WIDTH = 800;
     public static final int BOARD_HEIGHT = 800;
+    // squares along each side (CheckersModel's board), and the size of each one in pixels
+    private static final int BOARD_SQUARES = 8;
+    private static final int SQUARE_SIZE = BOARD_WIDTH / BOARD_SQUARES;
+
+    // the computer plays RED, searching at most this deep
+    private static final boolean COMPUTER_PLAYER = false;
+    private static final int COMPUTER_DEPTH = 12;
+    private static final long COMPUTER_NODES = 20000000;
+
+    private static final Color DARK_BEIGE = new Color(175, 128, 79);
+    private static final Color BEIGE = new Color(225, 198, 153);
+    private static final Color LIGHT_YELLOW = new Color(252, 247, 135);
+    private static final Color LIGHT_RED = new Color(202, 52, 51);
+
+    // the empty board, and one image per piece code (index 0 is unused)
+    private final BufferedImage background = drawBackground();
+    private final BufferedImage[] sprites = drawSprites();
+
+    // reused by paintComponent to read the area being repainted
+    private final Rectangle clip = new Rectangle();
+
+    // the last click, recorded once the squares it changed have been painted
+    private CheckersEvents.Click pendingClick;
 
     /**
      * Initializes the game board.
@@ -51,15 +91,41 @@ public class GameBoard extends JPanel {
             public void mouseReleased(MouseEvent e) {
                 Point p = e.getPoint();
 
-                int c = p.x / 100;
-                int r = p.y / 100;
+                int c = p.x / SQUARE_SIZE;
+                int r = p.y / SQUARE_SIZE;
 
-                if (c >= 0 && c < 8 && r >= 0 && r < 8) {
+                if (isComputersTurn()) {
+                    return;
+                }
+
+                CheckersEvents.Click click = new CheckersEvents.Click();
+                click.begin();
+
+                long black = cm.getBlackPieces();
+                long red = cm.getRedPieces();
+                long kings = cm.getKingPieces();
+                long hash = cm.getHash();
+                Point selected = prev;
+
+                if (c >= 0 && c < BOARD_SQUARES && r >= 0 && r < BOARD_SQUARES) {
                     handleSelectedSquare(r, c);
                 }
 
                 updateStatus(); // updates the status JLabel
-                repaint(); // repaints the game board
+                int changed = repaintChanges(black, red, kings, selected); // repaints what changed
+                if (click.shouldCommit()) {
+                    click.row = r;
+                    click.col = c;
+                    click.squaresChanged = changed;
+                    if (changed == 0) {
+                        click.commit();
+                    } else {
+                        pendingClick = click;
+                    }
+                }
+                if (cm.getHash() != hash) {
+                    startComputer();
+                }
             }
         });
     }
@@ -101,17 +167,119 @@ public class GameBoard extends JPanel {
             status.setText("BLACK wins!!!");
         } else if (winner == 2) {
             status.setText("RED wins!!!");
+        } else if (winner == CheckersModel.DRAW) {
+            status.setText("It's a draw!");
+        }
+    }
+
+    /**
+     * Turns the computer opponent (playing RED) on or off.
+     */
+    public void setComputerOpponent(boolean on) {
+        if (on && computer == null) {
+            computer = new ComputerPlayer(COMPUTER_DEPTH, COMPUTER_NODES,
+                    SwingUtilities::invokeLater);
+            startComputer();
+        } else if (!on && computer != null) {
+            computer.shutdown();
+            computer = null;
+            updateStatus();
+        }
+
+        // Makes sure this component has keyboard/mouse focus
+        requestFocusInWindow();
+    }
+
+    private boolean isComputersTurn() {
+        return computer != null && cm.getCurrentPlayer() == COMPUTER_PLAYER
+                && cm.checkWinner() == 0;
+    }
+
+    // helper function to let the computer move if it is its turn, or ponder during the other one
+    private void startComputer() {
+        if (computer == null) {
+            return;
         }
+        if (cm.checkWinner() != 0) {
+            computer.cancel();
+        } else if (isComputersTurn()) {
+            status.setText("RED is thinking...");
+            computer.think(cm, new ComputerPlayer.Listener() {
+                @Override
+                public void progress(SearchResult result) {
+                    status.setText("RED is thinking... depth " + result.getDepth()
+                            + ", best " + Pdn.moveToString(result.getMove()));
+                }
+
+                @Override
+                public void moveFound(SearchResult result) {
+                    playComputerMove(result.getMove());
+                }
+            });
+        } else {
+            computer.ponder(cm);
+        }
+    }
+
+    private void playComputerMove(int move) {
+        long black = cm.getBlackPieces();
+        long red = cm.getRedPieces();
+        long kings = cm.getKingPieces();
+        Point selected = prev;
+
+        cm.makeMove(move);
+        prev = null;
+        updateStatus();
+        repaintChanges(black, red, kings, selected);
+        startComputer();
+    }
+
+    /**
+     * Starts the game where the journal left off (a new game if there is no
+     * journal), and keeps journaling from then on.
+     */
+    public void resume() {
+        MoveJournal journal;
+        try {
+            journal = MoveJournal.open(Paths.get(CheckersModel.PATH_TO_JOURNAL), cm);
+        } catch (IOException e) {
+            System.out.println("Could not open the move journal: " + e.getMessage());
+            reset();
+            return;
+        }
+        // write out the last moves when the window is closed
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println("Could not write the move journal: " + e.getMessage());
+            }
+        }, "move-journal-close"));
+
+        prev = null;
+        if (cm.getIsJumpAgain()) {
+            prev = new Point(cm.getJumpAgainRow(), cm.getJumpAgainCol());
+        }
+        updateStatus();
+        repaint();
+        startComputer();
+
+        // Makes sure this component has keyboard/mouse focus
+        requestFocusInWindow();
     }
 
     /**
      * (Re-)sets the game to its initial state.
      */
     public void reset() {
+        if (computer != null) {
+            computer.cancel();
+        }
         cm.reset();
         status.setText("BLACK's Turn");
         prev = null;
         repaint();
+        startComputer();
 
         // Makes sure this component has keyboard/mouse focus
         requestFocusInWindow();
@@ -121,10 +289,27 @@ public class GameBoard extends JPanel {
      * Undo('s) the last move.
      */
     public void undo() {
+        long black = cm.getBlackPieces();
+        long red = cm.getRedPieces();
+        long kings = cm.getKingPieces();
+        Point selected = prev;
+
+        if (computer != null) {
+            computer.cancel();
+        }
         cm.undo();
+        // against the computer, take back its move too
+        while (isComputersTurn() && cm.getMoveHistory().length > 0) {
+            cm.undo();
+        }
         prev = null;
+        if (cm.getIsJumpAgain()) {
+            // the piece in the middle of a jump stays selected
+            prev = new Point(cm.getJumpAgainRow(), cm.getJumpAgainCol());
+        }
         updateStatus();
-        repaint();
+        repaintChanges(black, red, kings, selected);
+        startComputer();
 
         // Makes sure this component has keyboard/mouse focus
         requestFocusInWindow();
@@ -134,9 +319,13 @@ public class GameBoard extends JPanel {
      * Load's saved game
      */
     public void loadGame() {
+        if (computer != null) {
+            computer.cancel();
+        }
         cm.loadGame();
         updateStatus();
         repaint();
+        startComputer();
 
         // Makes sure this component has keyboard/mouse focus
         requestFocusInWindow();
@@ -154,57 +343,115 @@ public class GameBoard extends JPanel {
         requestFocusInWindow();
     }
 
+    // helper function to repaint the squares whose piece changed, and the old and new highlight,
+    // returning how many squares were repainted
+    private int repaintChanges(long black, long red, long kings, Point selected) {
+        long changed = (black ^ cm.getBlackPieces()) | (red ^ cm.getRedPieces())
+                | (kings ^ cm.getKingPieces());
+        int squares = Long.bitCount(changed);
+        for (; changed != 0; changed &= changed - 1) {
+            int square = Long.numberOfTrailingZeros(changed);
+            repaintSquare(square / BOARD_SQUARES, square % BOARD_SQUARES);
+        }
+        if (selected != prev) {
+            if (selected != null) {
+                repaintSquare(selected.x, selected.y);
+                squares++;
+            }
+            if (prev != null) {
+                repaintSquare(prev.x, prev.y);
+                squares++;
+            }
+        }
+        return squares;
+    }
+
+    private void repaintSquare(int row, int col) {
+        repaint(col * SQUARE_SIZE, row * SQUARE_SIZE, SQUARE_SIZE, SQUARE_SIZE);
+    }
+
+    // helper function to draw the empty board once
+    private static BufferedImage drawBackground() {
+        BufferedImage image = new BufferedImage(BOARD_WIDTH, BOARD_HEIGHT,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        g.setColor(DARK_BEIGE);
+        g.fillRect(0, 0, BOARD_WIDTH, BOARD_HEIGHT);
+        g.setColor(BEIGE);
+        for (int row = 0; row < BOARD_SQUARES; row++) {
+            for (int col = 0; col < BOARD_SQUARES; col++) {
+                if (row % 2 == col % 2) {
+                    g.fillRect(col * SQUARE_SIZE, row * SQUARE_SIZE, SQUARE_SIZE, SQUARE_SIZE);
+                }
+            }
+        }
+        g.dispose();
+        return image;
+    }
+
+    // helper function to draw each kind of piece once, on a transparent square
+    private static BufferedImage[] drawSprites() {
+        BufferedImage[] images = new BufferedImage[5];
+        for (int piece = CheckersModel.BLACK; piece <= CheckersModel.RED_KING; piece++) {
+            images[piece] = new BufferedImage(SQUARE_SIZE, SQUARE_SIZE,
+                    BufferedImage.TYPE_INT_ARGB);
+            Graphics g = images[piece].getGraphics();
+            boolean black = piece == CheckersModel.BLACK || piece == CheckersModel.BLACK_KING;
+            g.setColor(black ? Color.DARK_GRAY : LIGHT_RED);
+            g.fillOval(15, 15, 70, 70);
+            if (piece == CheckersModel.BLACK_KING || piece == CheckersModel.RED_KING) {
+                // kings denoted by another small circle on top left corner of checker piece
+                g.fillOval(15, 15, 20, 20);
+            }
+            g.dispose();
+        }
+        return images;
+    }
+
     /**
-     * Draws the game board.
+     * Draws the squares of the game board that need repainting.
      */
     @Override
     public void paintComponent(Graphics g) {
+        CheckersEvents.Paint event = new CheckersEvents.Paint();
+        event.begin();
         super.paintComponent(g);
 
-        // Draw board base
-        g.setColor(new Color(175, 128, 79)); // dark beige
-        g.fillRect(0, 0, 800, 800);
-
-        // Draws checker pieces, board squares, and highlight selected pieces
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                // draw board squares
-                if (row % 2 == col % 2) {
-                    g.setColor(new Color(225, 198, 153)); // beige
-                    g.fillRect(col * 100, row * 100, 100, 100);
+        g.getClipBounds(clip);
+        if (clip.isEmpty()) {
+            clip.setBounds(0, 0, BOARD_WIDTH, BOARD_HEIGHT);
+        }
+        g.drawImage(background, 0, 0, null);
+
+        // only the squares inside the area being repainted
+        int firstRow = Math.max(0, clip.y / SQUARE_SIZE);
+        int lastRow = Math.min(BOARD_SQUARES - 1, (clip.y + clip.height - 1) / SQUARE_SIZE);
+        int firstCol = Math.max(0, clip.x / SQUARE_SIZE);
+        int lastCol = Math.min(BOARD_SQUARES - 1, (clip.x + clip.width - 1) / SQUARE_SIZE);
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                int piece = cm.getPiece(row, col);
+                if (piece == CheckersModel.EMPTY) {
+                    continue;
                 }
                 // highlight selected piece
-                if (prev != null) {
-                    if (cm.getPiece(row, col) != CheckersModel.EMPTY) {
-                        if (row == prev.x && col == prev.y) {
-                            g.setColor(new Color(252, 247, 135)); // light yellow
-                            g.fillRect(col * 100, row * 100, 100, 100);
-                        }
-                    }
-                }
-                // draw checker pieces
-                if (cm.getPiece(row, col) == CheckersModel.BLACK) {
-                    g.setColor(Color.DARK_GRAY); // dark gray
-                    g.fillOval(15 + col * 100, 15 + row * 100, 70, 70);
-                }
-                if (cm.getPiece(row, col) == CheckersModel.RED) {
-                    g.setColor(new Color(202, 52, 51)); // light red
-                    g.fillOval(15 + col * 100, 15 + row * 100, 70, 70);
-                }
-                if (cm.getPiece(row, col) == CheckersModel.BLACK_KING) {
-                    g.setColor(Color.DARK_GRAY); // dark gray
-                    g.fillOval(15 + col * 100, 15 + row * 100, 70, 70);
-                    // kings denoted by another small circle on top left corner of checker piece
-                    g.fillOval(15 + col * 100, 15 + row * 100, 20, 20);
+                if (prev != null && row == prev.x && col == prev.y) {
+                    g.setColor(LIGHT_YELLOW);
+                    g.fillRect(col * SQUARE_SIZE, row * SQUARE_SIZE, SQUARE_SIZE, SQUARE_SIZE);
                 }
-                if (cm.getPiece(row, col) == CheckersModel.RED_KING) {
-                    g.setColor(new Color(202, 52, 51)); // light red
-                    g.fillOval(15 + col * 100, 15 + row * 100, 70, 70);
-                    g.fillOval(15 + col * 100, 15 + row * 100, 20, 20);
-                }
-
+                g.drawImage(sprites[piece], col * SQUARE_SIZE, row * SQUARE_SIZE, null);
             }
         }
+
+        if (event.shouldCommit()) {
+            event.squares = (lastRow - firstRow + 1) * (lastCol - firstCol + 1);
+            event.commit();
+        }
+        if (pendingClick != null) {
+            pendingClick.commit();
+            pendingClick = null;
+        }
     }
 
     /**
@@ -0,0 +1,428 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class hosts many games of Checkers at once for clients connecting
+ * over TCP, without any user interface.
+ *
+ * One thread runs a Selector that accepts connections, reads commands and
+ * writes replies without blocking. Commands are carried out on a pool of
+ * worker threads. Each connection's commands run one at a time and in order,
+ * and each game has its own lock, so moves in the same game never overlap
+ * but different games never wait for each other. BOARD reads the game's
+ * published Position instead, so watching a game never takes its lock.
+ *
+ * The protocol is one line of ASCII per command and one line per reply:
+ *   NEW                 -> GAME id
+ *   BOARD id            -> BOARD id black|red row-major pieces (64 digits, as getPiece)
+ *   MOVES id            -> MOVES id move ...
+ *   MOVE id move        -> MOVED id winner (0 while the game goes on, 1 black, 2 red, 3 draw)
+ *   UNDO id             -> UNDONE id
+ *   END id              -> ENDED id
+ *   QUIT                -> BYE, then the connection is closed
+ * Moves are written as the row,col of every square visited, separated by -
+ * for a simple move and x for a jump (for example 2,1-3,2 or 5,0x3,2x1,4).
+ * Anything wrong gets ERR and a message.
+ *
+ * A game lasts until END or until the connection that started it closes, and
+ * at most MAX_SESSIONS games are kept at once; NEW fails beyond that. Only
+ * the connection that started a game may play, undo or end it; any
+ * connection may watch it with BOARD.
+ *
+ * Usage: java GameServer [port] [workers]
+ */
+public class GameServer implements Closeable {
+
+    public static final int MAX_LINE = 1024;
+    public static final int MAX_SESSIONS = 10000;
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final Thread loop;
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger sessionCount = new AtomicInteger(); // up to MAX_SESSIONS
+    private final AtomicLong nextSession = new AtomicLong(1);
+    private final Set<Long> localGames = ConcurrentHashMap.newKeySet(); // games started by handle
+    private final Queue<Connection> readyToWrite = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    /**
+     * Starts a server on the given local port (0 picks a free one) with the
+     * given number of worker threads.
+     */
+    public GameServer(int port, int workerThreads) throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress("127.0.0.1", port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        workers = Executors.newFixedThreadPool(workerThreads, r -> {
+            Thread t = new Thread(r, "game-server-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        loop = new Thread(this::selectLoop, "game-server");
+        loop.start();
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * One game. All access to the model goes through the session's lock.
+     */
+    private static class Session {
+        private final CheckersModel cm = new CheckersModel();
+        private final int[] moves = new int[CheckersModel.MAX_MOVES];
+        private final Set<Long> owner; // the ids of the games of the connection that started it
+
+        Session(Set<Long> owner) {
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * Carries out one command line and returns the reply line, as if for a
+     * connection that never closes. Safe to call from any thread.
+     */
+    String handle(String line) {
+        return handle(line, localGames);
+    }
+
+    // helper function to carry out a command, adding a new game's id to the owner's games
+    private String handle(String line, Set<Long> owner) {
+        String[] words = line.trim().split("\\s+");
+        String command = words[0].toUpperCase();
+        if (command.equals("NEW")) {
+            if (sessionCount.incrementAndGet() > MAX_SESSIONS) {
+                sessionCount.decrementAndGet();
+                return "ERR too many games";
+            }
+            long id = nextSession.getAndIncrement();
+            sessions.put(id, new Session(owner));
+            owner.add(id);
+            return "GAME " + id;
+        } else if (command.equals("QUIT")) {
+            return "BYE";
+        } else if (words.length < 2) {
+            return "ERR missing game id";
+        }
+
+        long id;
+        try {
+            id = Long.parseLong(words[1]);
+        } catch (NumberFormatException e) {
+            return "ERR bad game id " + words[1];
+        }
+        Session session = sessions.get(id);
+        if (session == null) {
+            return "ERR no game " + id;
+        }
+
+        if (command.equals("BOARD")) {
+            // read from the published snapshot, so spectators never wait for the game's lock
+            Position position = session.cm.getPosition();
+            return "BOARD " + id + (position.getCurrentPlayer() ? " black " : " red ")
+                    + boardString(position);
+        }
+        if (session.owner != owner) {
+            return "ERR not your game " + id;
+        }
+        if (command.equals("END")) {
+            if (sessions.remove(id, session)) {
+                sessionCount.decrementAndGet();
+            }
+            owner.remove(id);
+            return "ENDED " + id;
+        }
+
+        synchronized (session) {
+            CheckersModel cm = session.cm;
+            switch (command) {
+                case "MOVES": {
+                    StringBuilder reply = new StringBuilder("MOVES ").append(id);
+                    int count = cm.getIsGameOver() ? 0 : cm.generateMoves(session.moves);
+                    for (int i = 0; i < count; i++) {
+                        reply.append(' ').append(Perft.moveToString(session.moves[i]));
+                    }
+                    return reply.toString();
+                }
+                case "MOVE": {
+                    if (words.length < 3) {
+                        return "ERR missing move";
+                    }
+                    if (cm.getIsGameOver()) {
+                        return "ERR game " + id + " is over";
+                    }
+                    int count = cm.generateMoves(session.moves);
+                    for (int i = 0; i < count; i++) {
+                        if (Perft.moveToString(session.moves[i]).equals(words[2])) {
+                            cm.makeMove(session.moves[i]);
+                            return "MOVED " + id + " " + cm.checkWinner();
+                        }
+                    }
+                    return "ERR illegal move " + words[2];
+                }
+                case "UNDO":
+                    cm.undo();
+                    return "UNDONE " + id;
+                default:
+                    return "ERR unknown command " + words[0];
+            }
+        }
+    }
+
+    // helper function to write the board as one digit per square
+    private static String boardString(Position position) {
+        char[] board = new char[64];
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                board[r * 8 + c] = (char) ('0' + position.getPiece(r, c));
+            }
+        }
+        return new String(board);
+    }
+
+    /**
+     * A client connection. Input and output buffers are only touched by the
+     * selector thread; commands and replies pass between threads through
+     * the two queues.
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer input = ByteBuffer.allocate(MAX_LINE);
+        private final Queue<String> commands = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Queue<ByteBuffer> replies = new ConcurrentLinkedQueue<>();
+        private final Set<Long> games = ConcurrentHashMap.newKeySet();
+        private volatile boolean tooLong; // a line did not fit in MAX_LINE bytes
+        private volatile boolean quitting;
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.key = channel.register(selector, SelectionKey.OP_READ, this);
+        }
+
+        // reads what has arrived and queues every complete line
+        void read() throws IOException {
+            if (channel.read(input) < 0) {
+                close();
+                return;
+            }
+            input.flip();
+            int start = 0;
+            for (int i = 0; i < input.limit(); i++) {
+                if (input.get(i) == '\n') {
+                    int end = i > start && input.get(i - 1) == '\r' ? i - 1 : i;
+                    byte[] line = new byte[end - start];
+                    input.position(start);
+                    input.get(line);
+                    start = i + 1;
+                    if (line.length > 0) {
+                        commands.add(new String(line, StandardCharsets.US_ASCII));
+                    }
+                }
+            }
+            input.position(start);
+            input.compact();
+            if (!input.hasRemaining()) {
+                // the lines before it are still answered, then the connection is closed
+                input.clear();
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                tooLong = true;
+            }
+            schedule();
+        }
+
+        // runs this connection's commands on a worker, unless one is already on it
+        private void schedule() {
+            if ((!commands.isEmpty() || tooLong) && scheduled.compareAndSet(false, true)) {
+                workers.execute(this::runCommands);
+            }
+        }
+
+        private void runCommands() {
+            try {
+                while (!quitting) {
+                    String line = commands.poll();
+                    if (line != null) {
+                        String reply;
+                        try {
+                            reply = handle(line, games);
+                        } catch (RuntimeException e) {
+                            reply = "ERR " + e;
+                        }
+                        if (reply.equals("BYE")) {
+                            quitting = true;
+                        }
+                        if (quitting) {
+                            // the connection may have closed while a NEW was being carried out
+                            dropGames();
+                        }
+                        reply(reply);
+                    } else {
+                        // tooLong is set after the lines before it were queued
+                        if (tooLong && commands.isEmpty()) {
+                            quitting = true;
+                            reply("ERR line too long");
+                        }
+                        break;
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            if (!quitting) {
+                schedule();
+            }
+        }
+
+        private void reply(String line) {
+            replies.add(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.US_ASCII)));
+            readyToWrite.add(this);
+            selector.wakeup();
+        }
+
+        // writes as much of the waiting replies as the socket takes
+        void write() throws IOException {
+            ByteBuffer reply;
+            while ((reply = replies.peek()) != null) {
+                channel.write(reply);
+                if (reply.hasRemaining()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                replies.poll();
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (quitting) {
+                close();
+            }
+        }
+
+        void close() {
+            quitting = true;
+            dropGames();
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing more to do for this client
+            }
+        }
+
+        // helper function to end every game this connection started
+        private void dropGames() {
+            for (Long id : games) {
+                if (sessions.remove(id) != null) {
+                    sessionCount.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void selectLoop() {
+        try {
+            while (running) {
+                selector.select();
+                Connection ready;
+                while ((ready = readyToWrite.poll()) != null) {
+                    try {
+                        if (ready.key.isValid()) {
+                            ready.write();
+                        }
+                    } catch (IOException e) {
+                        // the client went away, which only ends its own connection
+                        ready.close();
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isValid() && key.isAcceptable()) {
+                            SocketChannel channel = server.accept();
+                            if (channel != null) {
+                                channel.configureBlocking(false);
+                                new Connection(channel);
+                            }
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            ((Connection) key.attachment()).read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            ((Connection) key.attachment()).write();
+                        }
+                    } catch (IOException e) {
+                        if (key.attachment() instanceof Connection) {
+                            ((Connection) key.attachment()).close();
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // the server is shutting down
+        }
+    }
+
+    /**
+     * Stops accepting connections, closes every client and stops the
+     * worker threads. Games in progress are discarded.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            loop.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+        workers.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        int workerThreads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        GameServer server = new GameServer(port, workerThreads);
+        System.out.println("Listening on port " + server.getPort());
+    }
+}
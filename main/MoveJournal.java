@@ -0,0 +1,383 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class keeps an append-only journal of a game, so a crash loses at
+ * most the last few moves instead of the whole game and its undo history.
+ *
+ * A CheckersModel with a journal (see CheckersModel.setJournal) adds a
+ * record for every step it plays (moveOrJump, makeMove) and every step it
+ * takes back (undo, unmakeMove), and starts the journal again whenever it
+ * starts a new history (reset, setBoard, setPosition, loadGame). The journal
+ * is a 40 byte header holding the starting position, in the same layout as
+ * a GameArchive position record, then one 4 byte record per step:
+ *
+ *   byte 0  STEP or UNDO
+ *   byte 1  square the piece moved from (row * 8 + col), or 0
+ *   byte 2  square it moved to, or 0
+ *   byte 3  the other three bytes xor'ed together and inverted, so a
+ *           half-written record at the end is spotted and dropped
+ *
+ * The model's thread only adds records to a buffer in memory. A daemon
+ * thread writes them out in batches and forces them to disk once
+ * syncRecords records or syncMillis milliseconds have gone by since the
+ * last force, whichever comes first, so the model never waits on the disk.
+ *
+ * open replays an existing journal into a model, rebuilding the position
+ * and the undo history exactly as they were, and carries on appending to it.
+ */
+public class MoveJournal implements Closeable {
+
+    public static final int MAGIC = 0x434B4A4E; // "CKJN"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 40;
+    public static final int RECORD_BYTES = 4;
+
+    public static final int DEFAULT_SYNC_RECORDS = 16;
+    public static final long DEFAULT_SYNC_MILLIS = 1000;
+
+    static final int STEP = 1;
+    static final int UNDO = 2;
+
+    private final FileChannel channel;
+    private final int syncRecords;
+    private final long syncMillis;
+    private final Thread writer;
+
+    // Filled by the model's thread and emptied by the writer, both holding this:
+    // records waiting to be written, and a new header to start from (which
+    // replaces everything before it) if start was called since the last batch.
+    // added counts every record and header ever added, and synced how many of
+    // them are on the disk.
+    private int[] pending = new int[64];
+    private int pendingSize;
+    private ByteBuffer pendingHeader;
+    private long added;
+    private long synced;
+    private boolean forceRequested;
+    private boolean closed;
+    private IOException failure;
+
+    // only used on the writer thread
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_BYTES * 1024);
+    private int[] batch = new int[64];
+
+    private MoveJournal(FileChannel channel, int syncRecords, long syncMillis) {
+        if (syncRecords < 1 || syncMillis < 0) {
+            throw new IllegalArgumentException("Bad sync settings: " + syncRecords + " records, "
+                    + syncMillis + " ms");
+        }
+        this.channel = channel;
+        this.syncRecords = syncRecords;
+        this.syncMillis = syncMillis;
+        writer = new Thread(this::writeLoop, "move-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Opens the journal at path for the model, with the default sync
+     * settings. See the other open.
+     */
+    public static MoveJournal open(Path path, CheckersModel cm) throws IOException {
+        return open(path, cm, DEFAULT_SYNC_RECORDS, DEFAULT_SYNC_MILLIS);
+    }
+
+    /**
+     * Opens the journal at path and attaches it to the model. If the file
+     * holds a journal, it is replayed into the model first (anything after a
+     * damaged record is dropped); otherwise the journal starts from the
+     * model's current position.
+     */
+    public static MoveJournal open(Path path, CheckersModel cm, int syncRecords,
+                                   long syncMillis) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MoveJournal journal;
+        cm.setJournal(null);
+        try {
+            long end = replay(channel, cm);
+            if (end >= 0) {
+                channel.truncate(end);
+                channel.position(end);
+            }
+            journal = new MoveJournal(channel, syncRecords, syncMillis);
+            if (end < 0) {
+                journal.start(cm);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        cm.setJournal(journal);
+        return journal;
+    }
+
+    /**
+     * Replays the journal at path into the model without attaching it, and
+     * returns the number of records replayed, or -1 if the file holds no
+     * journal.
+     */
+    public static int replay(Path path, CheckersModel cm) throws IOException {
+        if (!Files.exists(path)) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long end = replay(channel, cm);
+            return end < 0 ? -1 : (int) ((end - HEADER_BYTES) / RECORD_BYTES);
+        }
+    }
+
+    // helper function to replay a journal into the model, returning where its last whole,
+    // valid record ends, or -1 if it does not start with a header
+    private static long replay(FileChannel channel, CheckersModel cm) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // keep reading
+        }
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC
+                || header.getInt() != VERSION) {
+            return -1;
+        }
+        long black = header.getLong();
+        long red = header.getLong();
+        long kings = header.getLong();
+        int flags = header.get();
+        cm.setPosition(black, red, kings, (flags & GameArchive.BLACK_TO_MOVE) != 0,
+                (flags & GameArchive.JUMP_AGAIN) != 0 ? flags & 63 : -1);
+
+        long end = HEADER_BYTES;
+        ByteBuffer records = ByteBuffer.allocate(RECORD_BYTES * 1024);
+        while (true) {
+            records.clear();
+            int read = channel.read(records, end);
+            if (read < RECORD_BYTES) {
+                return end;
+            }
+            records.flip();
+            while (records.remaining() >= RECORD_BYTES) {
+                int type = records.get() & 0xFF;
+                int from = records.get() & 0xFF;
+                int to = records.get() & 0xFF;
+                int check = records.get() & 0xFF;
+                if (check != (~(type ^ from ^ to) & 0xFF) || !apply(cm, type, from, to)) {
+                    return end;
+                }
+                end += RECORD_BYTES;
+            }
+        }
+    }
+
+    // helper function to play one record on the model, false if it does not fit the game
+    private static boolean apply(CheckersModel cm, int type, int from, int to) {
+        // every step and every undo changes the hash, so an unchanged one means it did nothing
+        long hash = cm.getHash();
+        if (type == UNDO) {
+            cm.undo();
+        } else if (type == STEP && from < 64 && to < 64) {
+            cm.moveOrJump(from >>> 3, from & 7, to >>> 3, to & 7);
+        }
+        return cm.getHash() != hash;
+    }
+
+    /**
+     * Starts the journal again from the model's current position. Called by
+     * the model whenever it starts a new history.
+     */
+    void start(CheckersModel cm) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.putLong(cm.getBlackPieces()).putLong(cm.getRedPieces())
+                .putLong(cm.getKingPieces());
+        header.put(GameArchive.flags(cm));
+        header.position(HEADER_BYTES).flip();
+        synchronized (this) {
+            if (closed || failure != null) {
+                return;
+            }
+            pendingHeader = header;
+            pendingSize = 0;
+            added++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Records a step from one square (row * 8 + col) to another.
+     */
+    void step(int from, int to) {
+        add(STEP | from << 8 | to << 16);
+    }
+
+    /**
+     * Records a step taken back.
+     */
+    void undo() {
+        add(UNDO);
+    }
+
+    private synchronized void add(int record) {
+        if (closed || failure != null) {
+            return;
+        }
+        if (pendingSize == pending.length) {
+            pending = Arrays.copyOf(pending, pendingSize * 2);
+        }
+        pending[pendingSize++] = record;
+        added++;
+        notifyAll();
+    }
+
+    /**
+     * Waits until everything recorded so far is written and forced to disk.
+     *
+     * @throws IOException if writing the journal failed
+     */
+    public void flush() throws IOException {
+        synchronized (this) {
+            long target = added;
+            forceRequested = true;
+            notifyAll();
+            while (synced < target && failure == null && writer.isAlive()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for the journal", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Writes and forces everything recorded, and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.close();
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    // helper function run by the writer thread: takes the pending records a batch at a
+    // time and writes them, forcing them out as the sync settings say
+    private void writeLoop() {
+        long unsynced = 0;
+        long lastSync = System.nanoTime();
+        while (true) {
+            ByteBuffer header;
+            int count;
+            long upTo;
+            boolean force;
+            boolean last;
+            synchronized (this) {
+                while (pendingHeader == null && pendingSize == 0 && !forceRequested && !closed) {
+                    long left = syncMillis - (System.nanoTime() - lastSync) / 1000000;
+                    if (unsynced > 0 && left <= 0) {
+                        break;
+                    }
+                    try {
+                        wait(unsynced > 0 ? left : 0);
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                header = pendingHeader;
+                pendingHeader = null;
+                count = pendingSize;
+                if (batch.length < count) {
+                    batch = new int[pending.length];
+                }
+                System.arraycopy(pending, 0, batch, 0, count);
+                pendingSize = 0;
+                upTo = added;
+                last = closed;
+                force = forceRequested || closed;
+                forceRequested = false;
+            }
+
+            try {
+                if (header != null) {
+                    channel.truncate(0);
+                    channel.position(0);
+                    write(header);
+                    unsynced++;
+                }
+                for (int i = 0; i < count; i++) {
+                    if (buffer.remaining() < RECORD_BYTES) {
+                        writeBuffer();
+                    }
+                    int type = batch[i] & 0xFF;
+                    int from = batch[i] >>> 8 & 0xFF;
+                    int to = batch[i] >>> 16 & 0xFF;
+                    buffer.put((byte) type).put((byte) from).put((byte) to)
+                            .put((byte) ~(type ^ from ^ to));
+                }
+                writeBuffer();
+                unsynced += count;
+                if (unsynced > 0 && (force || unsynced >= syncRecords
+                        || System.nanoTime() - lastSync >= syncMillis * 1000000)) {
+                    channel.force(false);
+                    unsynced = 0;
+                    lastSync = System.nanoTime();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+
+            synchronized (this) {
+                if (unsynced == 0) {
+                    synced = upTo;
+                    notifyAll();
+                }
+                if (last) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void write(ByteBuffer header) throws IOException {
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,275 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is a read-only opening book: the moves played from early
+ * positions in many games, so the engine can answer them without searching.
+ *
+ * A book file is a 16 byte header and then fixed-width 20 byte entries,
+ * each a position hash (CheckersModel.getHash), a move (packed as in
+ * generateMoves), the number of games that played it, and its points (2 for
+ * each win and 1 for each draw by the player who made the move). Entries are
+ * sorted by hash and, for the same hash, most played first, so a lookup is a
+ * binary search over the memory-mapped file.
+ *
+ * Books are made with OpeningBook.Builder.
+ *
+ * Usage: java OpeningBook BOOK [games] [depth] [plies]
+ * plays games between two engines of the given depth and writes the moves
+ * of their first plies into BOOK.
+ */
+public class OpeningBook implements Closeable {
+
+    public static final int MAGIC = 0x434B424B; // "CKBK"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int ENTRY_BYTES = 20;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer entries;
+    private final int entryCount;
+
+    /**
+     * Opens a book written by Builder.write.
+     */
+    public OpeningBook(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            if (header.getInt() != VERSION) {
+                throw new IOException("Unsupported opening book version: " + path);
+            }
+            long count = header.getLong();
+            if (channel.size() != HEADER_BYTES + count * ENTRY_BYTES
+                    || count * ENTRY_BYTES > Integer.MAX_VALUE) {
+                throw new IOException("Opening book is the wrong size: " + path);
+            }
+            entryCount = (int) count;
+            entries = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+                    count * ENTRY_BYTES);
+            entries.order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the most played move from the model's position, or -1 if the
+     * position is not in the book.
+     */
+    public int lookup(CheckersModel cm) {
+        int entry = firstEntry(cm.getHash());
+        return entry < 0 ? -1 : entries.getInt(entry * ENTRY_BYTES + 8);
+    }
+
+    /**
+     * Returns how many games played the given move from the model's
+     * position (0 if it is not in the book).
+     */
+    public int getPlayed(CheckersModel cm, int move) {
+        long hash = cm.getHash();
+        int entry = firstEntry(hash);
+        if (entry < 0) {
+            return 0;
+        }
+        for (; entry < entryCount && entries.getLong(entry * ENTRY_BYTES) == hash; entry++) {
+            if (entries.getInt(entry * ENTRY_BYTES + 8) == move) {
+                return entries.getInt(entry * ENTRY_BYTES + 12);
+            }
+        }
+        return 0;
+    }
+
+    // helper function to binary search for the first entry with the given hash, or -1
+    private int firstEntry(long hash) {
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (entries.getLong(middle * ENTRY_BYTES) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < entryCount && entries.getLong(low * ENTRY_BYTES) == hash ? low : -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Gathers move statistics from whole games, replayed from a new game
+     * (or, for archives, from each game's first position). Only the first
+     * maxPlies moves of each game are counted.
+     */
+    public static class Builder {
+        private final int maxPlies;
+        private final Map<Long, List<int[]>> positions = new HashMap<>();
+        private final int[] moves = new int[CheckersModel.MAX_MOVES];
+
+        public Builder(int maxPlies) {
+            this.maxPlies = maxPlies;
+        }
+
+        /**
+         * Counts the moves of a game played from a new game. winner is as
+         * returned by checkWinner (0 for an unfinished game, counted as a
+         * draw).
+         */
+        public void addGame(int[] gameMoves, int winner) {
+            CheckersModel cm = new CheckersModel();
+            for (int ply = 0; ply < gameMoves.length && ply < maxPlies; ply++) {
+                addMove(cm, gameMoves[ply], winner);
+                cm.makeMove(gameMoves[ply]);
+            }
+        }
+
+        public void addGame(SelfPlayRunner.GameResult game) {
+            addGame(game.getMoves(), game.getWinner());
+        }
+
+        /**
+         * Counts the moves of every game in an archive. Moves are found by
+         * matching each position to the one after it, and the winner is
+         * taken from each game's final position.
+         */
+        public void addArchive(GameArchive.Reader archive) {
+            CheckersModel cm = new CheckersModel();
+            CheckersModel next = new CheckersModel();
+            for (int game = 0; game < archive.getGameCount(); game++) {
+                archive.loadGame(game, cm);
+                int winner = cm.checkWinner();
+                int length = archive.getGameLength(game);
+                for (int ply = 0; ply + 1 < length && ply < maxPlies; ply++) {
+                    archive.loadPosition(game, ply, cm);
+                    archive.loadPosition(game, ply + 1, next);
+                    int move = findMove(cm, next.getHash());
+                    if (move == -1) {
+                        break;
+                    }
+                    addMove(cm, move, winner);
+                }
+            }
+        }
+
+        // helper function to find the move that leads to the position with the given hash
+        private int findMove(CheckersModel cm, long hash) {
+            int count = cm.generateMoves(moves);
+            for (int i = 0; i < count; i++) {
+                cm.makeMove(moves[i]);
+                boolean found = cm.getHash() == hash;
+                cm.unmakeMove(moves[i]);
+                if (found) {
+                    return moves[i];
+                }
+            }
+            return -1;
+        }
+
+        // helper function to count one move from the model's position
+        private void addMove(CheckersModel cm, int move, int winner) {
+            int points = winner == 0 || winner == CheckersModel.DRAW ? 1
+                    : (winner == 1) == cm.getCurrentPlayer() ? 2 : 0;
+            List<int[]> stats = positions.computeIfAbsent(cm.getHash(), h -> new ArrayList<>(2));
+            for (int[] stat : stats) {
+                if (stat[0] == move) {
+                    stat[1]++;
+                    stat[2] += points;
+                    return;
+                }
+            }
+            stats.add(new int[] {move, 1, points});
+        }
+
+        /**
+         * Returns the number of distinct positions seen so far.
+         */
+        public int getPositionCount() {
+            return positions.size();
+        }
+
+        /**
+         * Writes the book, leaving out moves played in fewer than minGames
+         * games. Returns the number of entries written.
+         */
+        public int write(Path path, int minGames) throws IOException {
+            List<long[]> sorted = new ArrayList<>();
+            for (Map.Entry<Long, List<int[]>> position : positions.entrySet()) {
+                for (int[] stat : position.getValue()) {
+                    if (stat[1] >= minGames) {
+                        sorted.add(new long[] {position.getKey(), stat[0], stat[1], stat[2]});
+                    }
+                }
+            }
+            sorted.sort(Comparator.<long[]>comparingLong(e -> e[0])
+                    .thenComparing(e -> -e[2]).thenComparing(e -> -e[3]));
+
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+                ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(VERSION).putLong(sorted.size());
+                out.write(buffer.array());
+                buffer = ByteBuffer.allocate(ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (long[] entry : sorted) {
+                    buffer.clear();
+                    buffer.putLong(entry[0]).putInt((int) entry[1]).putInt((int) entry[2])
+                            .putInt((int) entry[3]);
+                    out.write(buffer.array());
+                }
+            }
+            return sorted.size();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: java OpeningBook BOOK [games] [depth] [plies]");
+            return;
+        }
+        Path path = Paths.get(args[0]);
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+        int plies = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        Builder builder = new Builder(plies);
+        SelfPlayRunner runner = new SelfPlayRunner(Runtime.getRuntime().availableProcessors(),
+                () -> SelfPlayRunner.enginePolicy(depth, Long.MAX_VALUE, 16),
+                () -> SelfPlayRunner.enginePolicy(depth, Long.MAX_VALUE, 16),
+                200, 4, 1, null);
+        runner.run(games, game -> {
+            synchronized (builder) {
+                builder.addGame(game);
+            }
+        });
+        int written = builder.write(path, 2);
+        System.out.println(written + " book moves from " + builder.getPositionCount()
+                + " positions");
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class runs several SearchEngines on the same position at once (Lazy
+ * SMP).
+ *
+ * Every worker thread searches its own copy of the CheckersModel, and all of
+ * them share one TranspositionTable. The workers do not coordinate beyond
+ * that: each one benefits from the results the others leave in the table.
+ * Half of the helpers start one depth deeper so the threads spread out over
+ * different parts of the tree. When the main worker finishes, the helpers
+ * are stopped and the result from the deepest completed search is returned,
+ * with the node count summed over all threads.
+ *
+ * With one thread the search is exactly SearchEngine's, so results are
+ * deterministic.
+ */
+public class ParallelSearch {
+
+    private final TranspositionTable table;
+    private final SearchEngine[] engines;
+    private final ExecutorService workers;
+
+    /**
+     * Creates a search with the given number of threads. The depth and node
+     * limits apply to each worker on its own.
+     */
+    public ParallelSearch(int threads, int maxDepth, long nodeLimit, TranspositionTable table) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Parallel search needs at least one thread");
+        }
+        this.table = table;
+        engines = new SearchEngine[threads];
+        for (int i = 0; i < threads; i++) {
+            engines[i] = new SearchEngine(maxDepth, nodeLimit, table);
+        }
+        workers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, r -> {
+            Thread t = new Thread(r, "search-helper");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+    }
+
+    public int getThreads() {
+        return engines.length;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Sets the endgame tables every thread scores positions with few pieces
+     * from, or null to search every position.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        for (SearchEngine engine : engines) {
+            engine.setTablebase(tablebase);
+        }
+    }
+
+    /**
+     * Sets the opening book to play from before searching, or null to
+     * always search.
+     */
+    public void setOpeningBook(OpeningBook book) {
+        engines[0].setOpeningBook(book);
+    }
+
+    /**
+     * Searches for the best move for the player whose turn it is, leaving
+     * model unchanged.
+     */
+    public SearchResult search(CheckersModel model) {
+        if (engines.length == 1) {
+            return engines[0].search(model);
+        }
+        SearchResult booked = engines[0].bookMove(model);
+        if (booked != null) {
+            return booked;
+        }
+
+        table.newSearch();
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Future<SearchResult>> helpers = new ArrayList<>();
+        for (int i = 1; i < engines.length; i++) {
+            SearchEngine engine = engines[i];
+            CheckersModel copy = new CheckersModel(model);
+            int firstDepth = 1 + i % 2;
+            helpers.add(workers.submit(() -> engine.search(copy, firstDepth, stop)));
+        }
+
+        SearchResult best = engines[0].search(new CheckersModel(model), 1, stop);
+        stop.set(true);
+
+        long nodes = best.getNodes();
+        for (Future<SearchResult> helper : helpers) {
+            try {
+                SearchResult result = helper.get();
+                nodes += result.getNodes();
+                if (result.getDepth() > best.getDepth()) {
+                    best = result;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search thread failed", e.getCause());
+            }
+        }
+        return new SearchResult(best.getMove(), best.getScore(), best.getDepth(), nodes);
+    }
+
+    /**
+     * Stops the helper threads. The search cannot be used afterwards.
+     */
+    public void shutdown() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,656 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * This class reads and writes games in Portable Draughts Notation (PDN).
+ *
+ * The dark squares are numbered 1 to 32 row by row from black's side, so
+ * square n is at row (n - 1) / 4 and black starts on squares 1 to 12. Moves
+ * are written as squares joined by - (a simple move) or x (a jump, with
+ * every square the piece lands on). Black is the first player: a result of
+ * 1-0 is a win for black and 0-1 a win for red. A FEN tag gives a starting
+ * position other than the new game, with B for black and W for red.
+ *
+ * The Reader goes through its input one game at a time with a fixed buffer,
+ * so memory use does not depend on the size of the file. Every move is
+ * played on a CheckersModel, and games with a move that is not legal are
+ * skipped.
+ *
+ * Usage: java Pdn FILE
+ * reads every game in FILE and reports how many were valid.
+ */
+public class Pdn {
+
+    private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2", "*", "2-0", "0-2",
+        "1-1", "0-0"};
+
+    // helper function to turn a PDN square number (1 to 32) into a board square (row * 8 + col)
+    static int toSquare(int number) {
+        int row = (number - 1) / 4;
+        return row * 8 + 2 * ((number - 1) % 4) + (row % 2 == 0 ? 1 : 0);
+    }
+
+    // helper function to turn a dark board square into its PDN square number
+    static int toNumber(int square) {
+        return square / 8 * 4 + square % 8 / 2 + 1;
+    }
+
+    /**
+     * One game: its tags, starting position, moves (packed as in
+     * CheckersModel.generateMoves) and result.
+     */
+    public static class Game {
+        private final Map<String, String> tags;
+        private final long black;
+        private final long red;
+        private final long kings;
+        private final boolean blackToMove;
+        private final int[] moves;
+        private final String result;
+
+        public Game(Map<String, String> tags, long black, long red, long kings,
+                    boolean blackToMove, int[] moves, String result) {
+            this.tags = tags;
+            this.black = black;
+            this.red = red;
+            this.kings = kings;
+            this.blackToMove = blackToMove;
+            this.moves = moves;
+            this.result = result;
+        }
+
+        public String getTag(String name) {
+            return tags.get(name);
+        }
+
+        public Map<String, String> getTags() {
+            return Collections.unmodifiableMap(tags);
+        }
+
+        public int[] getMoves() {
+            return moves.clone();
+        }
+
+        public int getLength() {
+            return moves.length;
+        }
+
+        public String getResult() {
+            return result;
+        }
+
+        /**
+         * Sets up the model at the game's starting position.
+         */
+        public void loadStart(CheckersModel cm) {
+            cm.setPosition(black, red, kings, blackToMove, -1);
+        }
+
+        /**
+         * Sets up the model at the starting position and plays every move,
+         * so the model's undo history holds the whole game.
+         */
+        public void replay(CheckersModel cm) {
+            loadStart(cm);
+            for (int move : moves) {
+                cm.makeMove(move);
+            }
+        }
+    }
+
+    /**
+     * Reads games from a character stream, one at a time.
+     */
+    public static class Reader implements Closeable {
+        private final java.io.Reader in;
+        private final char[] buffer = new char[1 << 16];
+        private int position;
+        private int limit;
+        private int pushedBack = -1;
+
+        private final char[] token = new char[256];
+        private int tokenLength;
+        private final int[] squares = new int[CheckersModel.MAX_JUMPS + 2];
+        private final int[] legalMoves = new int[CheckersModel.MAX_MOVES];
+        private int[] gameMoves = new int[256];
+        private int gameLength;
+
+        private final CheckersModel cm = new CheckersModel();
+        private Map<String, String> tags = new LinkedHashMap<>();
+        private boolean started;
+        private boolean invalid;
+        private long startBlack;
+        private long startRed;
+        private long startKings;
+        private boolean startBlackToMove;
+
+        private long skippedGames;
+
+        public Reader(java.io.Reader in) {
+            this.in = in;
+            // the model is never watched, so moves read do not publish positions
+            cm.setPublishing(false);
+        }
+
+        /**
+         * Returns the number of games skipped so far because of an illegal
+         * move or a bad FEN tag.
+         */
+        public long getSkippedGames() {
+            return skippedGames;
+        }
+
+        /**
+         * Passes every remaining valid game to consumer, in order. Returns
+         * the number of games passed.
+         */
+        public long readAll(Consumer<Game> consumer) throws IOException {
+            long count = 0;
+            Game game;
+            while ((game = next()) != null) {
+                consumer.accept(game);
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * Returns the next valid game, or null at the end of the input.
+         */
+        public Game next() throws IOException {
+            while (true) {
+                int c = skipWhitespace();
+                if (c < 0) {
+                    if (!started && tags.isEmpty()) {
+                        return null;
+                    }
+                    Game game = finishGame("*");
+                    if (game != null) {
+                        return game;
+                    }
+                    continue;
+                }
+                if (c == '[') {
+                    if (started) {
+                        // a new game begins without a result for the last one
+                        pushedBack = c;
+                        Game game = finishGame("*");
+                        if (game != null) {
+                            return game;
+                        }
+                    } else {
+                        readTag();
+                    }
+                } else if (c == '{') {
+                    skipUntil('}');
+                } else if (c == ';' || c == '%') {
+                    skipUntil('\n');
+                } else if (c == '(') {
+                    skipVariation();
+                } else {
+                    readToken(c);
+                    String result = resultToken();
+                    if (result != null) {
+                        Game game = finishGame(result);
+                        if (game != null) {
+                            return game;
+                        }
+                    } else if (token[0] != '$') {
+                        playToken();
+                    }
+                }
+            }
+        }
+
+        // helper function to read one character, or -1 at the end of the input
+        private int read() throws IOException {
+            if (pushedBack >= 0) {
+                int c = pushedBack;
+                pushedBack = -1;
+                return c;
+            }
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (c >= 0 && Character.isWhitespace(c));
+            return c;
+        }
+
+        private void skipUntil(char end) throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (c >= 0 && c != end);
+        }
+
+        // helper function to skip a variation in parentheses, with any comments and variations inside
+        private void skipVariation() throws IOException {
+            int depth = 1;
+            while (depth > 0) {
+                int c = read();
+                if (c < 0) {
+                    return;
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                } else if (c == '{') {
+                    skipUntil('}');
+                }
+            }
+        }
+
+        // reads a token starting with c, up to whitespace or the start of something else
+        private void readToken(int c) throws IOException {
+            tokenLength = 0;
+            while (c >= 0 && !Character.isWhitespace(c) && "[{(;".indexOf(c) < 0) {
+                if (tokenLength < token.length) {
+                    token[tokenLength++] = (char) c;
+                }
+                c = read();
+            }
+            if (c >= 0 && !Character.isWhitespace(c)) {
+                pushedBack = c;
+            }
+        }
+
+        private String resultToken() {
+            for (String result : RESULTS) {
+                if (result.length() == tokenLength) {
+                    boolean same = true;
+                    for (int i = 0; i < tokenLength && same; i++) {
+                        same = token[i] == result.charAt(i);
+                    }
+                    if (same) {
+                        return result;
+                    }
+                }
+            }
+            return null;
+        }
+
+        // reads [Name "value"] after the opening bracket
+        private void readTag() throws IOException {
+            StringBuilder name = new StringBuilder();
+            int c = skipWhitespace();
+            while (c >= 0 && !Character.isWhitespace(c) && c != '"' && c != ']') {
+                name.append((char) c);
+                c = read();
+            }
+            while (c >= 0 && c != '"' && c != ']') {
+                c = read();
+            }
+            StringBuilder value = new StringBuilder();
+            if (c == '"') {
+                c = read();
+                while (c >= 0 && c != '"') {
+                    if (c == '\\') {
+                        c = read();
+                    }
+                    if (c >= 0) {
+                        value.append((char) c);
+                    }
+                    c = read();
+                }
+                skipUntil(']');
+            }
+            tags.put(name.toString(), value.toString());
+        }
+
+        // helper function to set up the model for a new game, from its FEN tag if it has one
+        private void startGame() {
+            started = true;
+            String fen = tags.get("FEN");
+            if (fen == null) {
+                cm.reset();
+            } else {
+                try {
+                    long[] position = parseFen(fen);
+                    cm.setPosition(position[0], position[1], position[2], position[3] != 0, -1);
+                } catch (IllegalArgumentException e) {
+                    invalid = true;
+                    return;
+                }
+            }
+            startBlack = cm.getBlackPieces();
+            startRed = cm.getRedPieces();
+            startKings = cm.getKingPieces();
+            startBlackToMove = cm.getCurrentPlayer();
+        }
+
+        // plays the move in the token, after any move number in front of it
+        private void playToken() {
+            int start = 0;
+            for (int i = 0; i < tokenLength; i++) {
+                if (token[i] == '.') {
+                    start = i + 1;
+                }
+            }
+            int end = tokenLength;
+            while (end > start && !Character.isDigit(token[end - 1])) {
+                end--; // move strength marks such as ! and ?
+            }
+            if (start == end) {
+                return;
+            }
+            if (!started) {
+                startGame();
+            }
+            if (invalid) {
+                return;
+            }
+
+            int count = 0;
+            int number = 0;
+            boolean jump = false;
+            for (int i = start; i <= end; i++) {
+                char c = i < end ? token[i] : '-';
+                if (Character.isDigit(c)) {
+                    number = number * 10 + (c - '0');
+                } else if ((c == '-' || c == 'x' || c == ':') && number >= 1 && number <= 32
+                        && count < squares.length) {
+                    squares[count++] = toSquare(number);
+                    jump |= c == 'x';
+                    number = 0;
+                } else {
+                    invalid = true;
+                    return;
+                }
+            }
+            if (count < 2) {
+                invalid = true;
+                return;
+            }
+
+            int move = findMove(count, jump);
+            if (move == -1) {
+                invalid = true;
+                return;
+            }
+            cm.makeMove(move);
+            if (gameLength == gameMoves.length) {
+                gameMoves = Arrays.copyOf(gameMoves, gameLength * 2);
+            }
+            gameMoves[gameLength++] = move;
+        }
+
+        // finds the legal move through the squares read; a jump may give just its ends
+        private int findMove(int count, boolean jump) {
+            int legalCount = cm.generateMoves(legalMoves);
+            int shorthand = -1;
+            for (int i = 0; i < legalCount; i++) {
+                int move = legalMoves[i];
+                int steps = CheckersModel.moveSteps(move);
+                if ((CheckersModel.moveJumps(move) > 0) != jump
+                        || CheckersModel.moveFrom(move) != squares[0]
+                        || CheckersModel.moveTo(move) != squares[count - 1]) {
+                    continue;
+                }
+                if (count == steps + 1) {
+                    boolean same = true;
+                    for (int step = 1; step < steps && same; step++) {
+                        same = CheckersModel.moveSquare(move, step) == squares[step];
+                    }
+                    if (same) {
+                        return move;
+                    }
+                }
+                if (count == 2 && shorthand == -1) {
+                    shorthand = move;
+                }
+            }
+            return shorthand;
+        }
+
+        // ends the game being read; returns it, or null if it was invalid
+        private Game finishGame(String result) {
+            if (!started) {
+                startGame();
+            }
+            Game game = null;
+            if (invalid) {
+                skippedGames++;
+            } else {
+                game = new Game(tags, startBlack, startRed, startKings, startBlackToMove,
+                        Arrays.copyOf(gameMoves, gameLength), result);
+            }
+            tags = new LinkedHashMap<>();
+            started = false;
+            invalid = false;
+            gameLength = 0;
+            return game;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Parses a FEN tag value such as B:W21,22,K30:B1-12 into the black,
+     * red and king masks and 1 if black is to move (0 if red is).
+     */
+    static long[] parseFen(String fen) {
+        String[] fields = fen.trim().replace(".", "").split(":");
+        if (fields.length < 3 || !fields[0].equals("B") && !fields[0].equals("W")) {
+            throw new IllegalArgumentException("Bad FEN: " + fen);
+        }
+        long[] position = new long[] {0, 0, 0, fields[0].equals("B") ? 1 : 0};
+        for (int f = 1; f < fields.length; f++) {
+            String field = fields[f].trim();
+            if (field.isEmpty() || field.charAt(0) != 'B' && field.charAt(0) != 'W') {
+                throw new IllegalArgumentException("Bad FEN: " + fen);
+            }
+            int color = field.charAt(0) == 'B' ? 0 : 1;
+            for (String item : field.substring(1).split(",")) {
+                item = item.trim();
+                if (item.isEmpty()) {
+                    continue;
+                }
+                boolean king = item.charAt(0) == 'K';
+                String[] range = (king ? item.substring(1) : item).split("-");
+                int first;
+                int last;
+                try {
+                    first = Integer.parseInt(range[0]);
+                    last = range.length > 1 ? Integer.parseInt(range[1]) : first;
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Bad FEN: " + fen);
+                }
+                if (first < 1 || last > 32 || first > last) {
+                    throw new IllegalArgumentException("Bad FEN: " + fen);
+                }
+                for (int n = first; n <= last; n++) {
+                    long square = 1L << toSquare(n);
+                    position[color] |= square;
+                    if (king) {
+                        position[2] |= square;
+                    }
+                }
+            }
+        }
+        if ((position[0] & position[1]) != 0) {
+            throw new IllegalArgumentException("Bad FEN: " + fen);
+        }
+        return position;
+    }
+
+    /**
+     * Writes games as PDN.
+     */
+    public static class Writer implements Closeable {
+        private static final int LINE_LENGTH = 79;
+
+        private final java.io.Writer out;
+
+        public Writer(java.io.Writer out) {
+            this.out = out;
+        }
+
+        /**
+         * Writes the game in the model's move history (since the last reset,
+         * setBoard or setPosition) with the given tags. The result is taken
+         * from the final position. The model is not changed.
+         *
+         * @throws IllegalStateException if the history ends in the middle of
+         *         a jump, which PDN cannot write as a move
+         */
+        public void writeGame(CheckersModel cm, Map<String, String> tags) throws IOException {
+            if (cm.getIsJumpAgain()) {
+                throw new IllegalStateException("The game ends in the middle of a jump");
+            }
+            Position start = cm.getHistoryStart();
+            int winner = cm.getWinner();
+            String result = winner == 1 ? "1-0" : winner == 2 ? "0-1"
+                    : winner == CheckersModel.DRAW ? "1/2-1/2" : "*";
+            write(tags, start.getBlackPieces(), start.getRedPieces(), start.getKingPieces(),
+                    start.getCurrentPlayer(), cm.getMoveHistory(), result);
+        }
+
+        public void writeGame(Game game) throws IOException {
+            write(game.tags, game.black, game.red, game.kings, game.blackToMove, game.moves,
+                    game.result);
+        }
+
+        private void write(Map<String, String> tags, long black, long red, long kings,
+                           boolean blackToMove, int[] moves, String result) throws IOException {
+            Map<String, String> all = new LinkedHashMap<>(tags);
+            all.put("Result", result);
+            CheckersModel start = new CheckersModel();
+            if (black != start.getBlackPieces() || red != start.getRedPieces()
+                    || kings != start.getKingPieces() || !blackToMove) {
+                all.put("FEN", fen(black, red, kings, blackToMove));
+            } else {
+                all.remove("FEN");
+            }
+            for (Map.Entry<String, String> tag : all.entrySet()) {
+                out.write("[" + tag.getKey() + " \"" + tag.getValue().replace("\\", "\\\\")
+                        .replace("\"", "\\\"") + "\"]\n");
+            }
+            out.write('\n');
+
+            StringBuilder line = new StringBuilder();
+            boolean blackMoves = blackToMove;
+            int moveNumber = 1;
+            for (int i = 0; i < moves.length; i++) {
+                StringBuilder word = new StringBuilder();
+                if (blackMoves) {
+                    word.append(moveNumber).append(". ");
+                } else if (i == 0) {
+                    word.append(moveNumber).append("... ");
+                }
+                word.append(moveToString(moves[i]));
+                append(line, word);
+                if (!blackMoves) {
+                    moveNumber++;
+                }
+                blackMoves = !blackMoves;
+            }
+            append(line, new StringBuilder(result));
+            out.write(line.toString());
+            out.write("\n\n");
+        }
+
+        // helper function to add a word to the movetext, starting a new line when it gets long
+        private void append(StringBuilder line, CharSequence word) throws IOException {
+            if (line.length() > 0 && line.length() + 1 + word.length() > LINE_LENGTH) {
+                out.write(line.toString());
+                out.write('\n');
+                line.setLength(0);
+            }
+            if (line.length() > 0) {
+                line.append(' ');
+            }
+            line.append(word);
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes a move in PDN, with every square of a jump.
+     */
+    public static String moveToString(int move) {
+        StringBuilder s = new StringBuilder();
+        String separator = CheckersModel.moveJumps(move) == 0 ? "-" : "x";
+        for (int step = 0; step <= CheckersModel.moveSteps(move); step++) {
+            if (step > 0) {
+                s.append(separator);
+            }
+            s.append(toNumber(CheckersModel.moveSquare(move, step)));
+        }
+        return s.toString();
+    }
+
+    // helper function to write a position as a FEN tag value
+    static String fen(long black, long red, long kings, boolean blackToMove) {
+        StringBuilder s = new StringBuilder(blackToMove ? "B" : "W");
+        s.append(":W");
+        appendSquares(s, red, kings);
+        s.append(":B");
+        appendSquares(s, black, kings);
+        return s.toString();
+    }
+
+    private static void appendSquares(StringBuilder s, long pieces, long kings) {
+        boolean first = true;
+        for (int n = 1; n <= 32; n++) {
+            long square = 1L << toSquare(n);
+            if ((pieces & square) != 0) {
+                if (!first) {
+                    s.append(',');
+                }
+                if ((kings & square) != 0) {
+                    s.append('K');
+                }
+                s.append(n);
+                first = false;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java Pdn FILE");
+            return;
+        }
+        long begin = System.nanoTime();
+        long[] moves = new long[1];
+        try (Reader reader = new Reader(new InputStreamReader(
+                Files.newInputStream(Paths.get(args[0])), StandardCharsets.ISO_8859_1))) {
+            long games = reader.readAll(game -> moves[0] += game.getLength());
+            long elapsed = Math.max(System.nanoTime() - begin, 1);
+            System.out.println(games + " games (" + moves[0] + " moves) read, "
+                    + reader.getSkippedGames() + " skipped, in " + elapsed / 1000000 + " ms");
+        }
+    }
+}
@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class counts the positions reachable in exactly n moves (perft) using
+ * CheckersModel.generateMoves and makeMove/unmakeMove. The counts are a
+ * baseline for checking the move rules, and the time taken gives a
+ * nodes/sec figure for the model.
+ *
+ * Each move from the starting position is counted by its own fork-join task
+ * on its own copy of the model, and large subtrees are split again one
+ * level down.
+ *
+ * Usage: java Perft depth [divide] [load] [international]
+ *   divide         also prints the count below each move from the starting position
+ *   load           starts from the saved game instead of a new game
+ *   international  counts 10x10 international draughts with DraughtsModel
+ *                  instead, in one thread
+ */
+public class Perft {
+
+    // subtrees at least this deep are split into one task per move
+    private static final int SPLIT_DEPTH = 5;
+
+    /**
+     * Counts the positions depth moves from the model's position, in the
+     * calling thread. The model is left unchanged.
+     */
+    public static long perft(CheckersModel cm, int depth) {
+        boolean publishing = cm.isPublishing();
+        cm.setPublishing(false);
+        try {
+            return perft(cm, depth, new int[Math.max(depth, 1)][CheckersModel.MAX_MOVES]);
+        } finally {
+            cm.setPublishing(publishing);
+        }
+    }
+
+    private static long perft(CheckersModel cm, int depth, int[][] buffers) {
+        if (depth <= 0) {
+            return 1;
+        }
+        int[] moves = buffers[depth - 1];
+        int count = cm.generateMoves(moves);
+        if (depth == 1) {
+            return count;
+        }
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            cm.makeMove(moves[i]);
+            nodes += perft(cm, depth - 1, buffers);
+            cm.unmakeMove(moves[i]);
+        }
+        return nodes;
+    }
+
+    /**
+     * Counts the positions depth moves from a DraughtsModel's position, in
+     * the calling thread. The model is left unchanged.
+     */
+    public static long perft(DraughtsModel dm, int depth) {
+        return perft(dm, depth, new long[Math.max(depth, 1)][DraughtsModel.MAX_MOVES]);
+    }
+
+    private static long perft(DraughtsModel dm, int depth, long[][] buffers) {
+        if (depth <= 0) {
+            return 1;
+        }
+        long[] moves = buffers[depth - 1];
+        int count = dm.generateMoves(moves);
+        if (depth == 1) {
+            return count;
+        }
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            dm.makeMove(moves[i]);
+            nodes += perft(dm, depth - 1, buffers);
+            dm.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Counts the positions depth moves from the model's position, spread
+     * over the pool's threads.
+     */
+    public static long perft(CheckersModel cm, int depth, ForkJoinPool pool) {
+        return pool.invoke(new PerftTask(new CheckersModel(cm), depth));
+    }
+
+    /**
+     * Counts the positions below each legal move (depth - 1 moves further
+     * on), keyed by the move written as its squares. Each move is counted as
+     * a separate task in the pool. Depth must be at least 1.
+     */
+    public static Map<String, Long> divide(CheckersModel cm, int depth, ForkJoinPool pool) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Divide needs a depth of at least 1: " + depth);
+        }
+        int[] moves = new int[CheckersModel.MAX_MOVES];
+        int count = cm.generateMoves(moves);
+
+        List<PerftTask> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            CheckersModel copy = new CheckersModel(cm);
+            copy.makeMove(moves[i]);
+            tasks.add(new PerftTask(copy, depth - 1));
+        }
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                invokeAll(tasks);
+                return null;
+            }
+        });
+
+        Map<String, Long> results = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            results.put(moveToString(moves[i]), tasks.get(i).join());
+        }
+        return results;
+    }
+
+    // helper function to write a move as the row,col of every square it visits
+    static String moveToString(int move) {
+        StringBuilder s = new StringBuilder();
+        String separator = CheckersModel.moveJumps(move) == 0 ? "-" : "x";
+        for (int step = 0; step <= CheckersModel.moveSteps(move); step++) {
+            int square = CheckersModel.moveSquare(move, step);
+            if (step > 0) {
+                s.append(separator);
+            }
+            s.append(square / 8).append(",").append(square % 8);
+        }
+        return s.toString();
+    }
+
+    // counts one subtree, on a model owned by the task
+    private static class PerftTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final CheckersModel cm;
+        private final int depth;
+
+        PerftTask(CheckersModel cm, int depth) {
+            this.cm = cm;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            if (depth < SPLIT_DEPTH) {
+                return perft(cm, depth);
+            }
+            int[] moves = new int[CheckersModel.MAX_MOVES];
+            int count = cm.generateMoves(moves);
+            List<PerftTask> children = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                CheckersModel copy = new CheckersModel(cm);
+                copy.makeMove(moves[i]);
+                children.add(new PerftTask(copy, depth - 1));
+            }
+            long nodes = 0;
+            for (PerftTask child : invokeAll(children)) {
+                nodes += child.join();
+            }
+            return nodes;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java Perft depth [divide] [load] [international]");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth must be at least 0: " + depth);
+        }
+        boolean divide = false;
+        boolean load = false;
+        boolean international = false;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("divide")) {
+                divide = true;
+            } else if (args[i].equals("load")) {
+                load = true;
+            } else if (args[i].equals("international")) {
+                international = true;
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (international && (divide || load)) {
+            throw new IllegalArgumentException("international cannot be used with divide or load");
+        }
+        CheckersModel cm = new CheckersModel();
+        if (load) {
+            cm.loadGame();
+        }
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long start = System.nanoTime();
+        long nodes;
+        if (international) {
+            nodes = perft(new DraughtsModel(Rules.INTERNATIONAL), depth);
+        } else if (divide) {
+            nodes = 0;
+            for (Map.Entry<String, Long> entry : divide(cm, depth, pool).entrySet()) {
+                System.out.println(entry.getKey() + ": " + entry.getValue());
+                nodes += entry.getValue();
+            }
+        } else {
+            nodes = perft(cm, depth, pool);
+        }
+        long elapsed = Math.max(System.nanoTime() - start, 1);
+
+        System.out.println("perft(" + depth + ") = " + nodes);
+        System.out.println("time: " + elapsed / 1000000 + " ms, " +
+                nodes * 1000000000L / elapsed + " nodes/sec");
+    }
+}
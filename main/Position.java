@@ -0,0 +1,102 @@
+/**
+ * This class is an immutable snapshot of a CheckersModel position: the
+ * pieces, the player to move, and any jump in progress, with the model's
+ * Zobrist hash.
+ *
+ * A CheckersModel publishes a new Position after every change (see
+ * CheckersModel.getPosition), so other threads (analysis, spectators,
+ * autosave) can read a consistent position without locking the model or
+ * copying its state. Two positions are equal when they have the same
+ * pieces, player to move and jump in progress.
+ */
+public final class Position {
+
+    private final long blackPieces;
+    private final long redPieces;
+    private final long kingPieces;
+    private final boolean blackToMove;
+    private final int jumpAgainSquare;
+    private final long hash;
+
+    // made by CheckersModel, which already knows the hash
+    Position(long blackPieces, long redPieces, long kingPieces, boolean blackToMove,
+             int jumpAgainSquare, long hash) {
+        this.blackPieces = blackPieces;
+        this.redPieces = redPieces;
+        this.kingPieces = kingPieces;
+        this.blackToMove = blackToMove;
+        this.jumpAgainSquare = jumpAgainSquare;
+        this.hash = hash;
+    }
+
+    public long getBlackPieces() {
+        return blackPieces;
+    }
+
+    public long getRedPieces() {
+        return redPieces;
+    }
+
+    public long getKingPieces() {
+        return kingPieces;
+    }
+
+    /**
+     * Returns true if it is black's turn, as CheckersModel.getCurrentPlayer.
+     */
+    public boolean getCurrentPlayer() {
+        return blackToMove;
+    }
+
+    /**
+     * Returns the square (row * 8 + col) of the piece in the middle of a
+     * jump, or -1.
+     */
+    public int getJumpAgainSquare() {
+        return jumpAgainSquare;
+    }
+
+    /**
+     * Returns the same Zobrist hash as CheckersModel.getHash for this position.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    public int getPiece(int row, int col) {
+        long square = 1L << (row * 8 + col);
+        if ((blackPieces & square) != 0) {
+            return (kingPieces & square) != 0 ? CheckersModel.BLACK_KING : CheckersModel.BLACK;
+        } else if ((redPieces & square) != 0) {
+            return (kingPieces & square) != 0 ? CheckersModel.RED_KING : CheckersModel.RED;
+        }
+        return CheckersModel.EMPTY;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Position)) {
+            return false;
+        }
+        Position other = (Position) o;
+        return hash == other.hash && blackPieces == other.blackPieces
+                && redPieces == other.redPieces && kingPieces == other.kingPieces
+                && blackToMove == other.blackToMove && jumpAgainSquare == other.jumpAgainSquare;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+
+    /**
+     * Returns the position as a PDN FEN string.
+     */
+    @Override
+    public String toString() {
+        return Pdn.fen(blackPieces, redPieces, kingPieces, blackToMove);
+    }
+}
@@ -0,0 +1,122 @@
+import java.util.Arrays;
+
+/**
+ * This class counts how many times each position has occurred in a game,
+ * keyed by the model's Zobrist hash, so CheckersModel can spot a threefold
+ * repetition in constant time per move.
+ *
+ * It is an open-addressing table of primitive longs and ints. A position is
+ * added as each move is made and removed again when the move is undone, so
+ * the counts always match the game's history. Positions from before a
+ * capture or a man's move can never come back, so nothing ever needs to be
+ * cleared while the game goes on. The table doubles when it is half full.
+ */
+class RepetitionTable {
+
+    private long[] keys;
+    private int[] counts; // 0 marks an empty slot
+    private int size;
+
+    RepetitionTable() {
+        keys = new long[64];
+        counts = new int[64];
+    }
+
+    /**
+     * Creates a table holding the same counts as other.
+     */
+    RepetitionTable(RepetitionTable other) {
+        keys = other.keys.clone();
+        counts = other.counts.clone();
+        size = other.size;
+    }
+
+    /**
+     * Adds one occurrence of the position and returns how many times it has
+     * occurred now.
+     */
+    int add(long hash) {
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int slot = slot(hash, mask);
+        while (counts[slot] != 0) {
+            if (keys[slot] == hash) {
+                return ++counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = hash;
+        counts[slot] = 1;
+        size++;
+        return 1;
+    }
+
+    /**
+     * Removes one occurrence of a position added earlier.
+     */
+    void remove(long hash) {
+        int mask = keys.length - 1;
+        int slot = slot(hash, mask);
+        while (counts[slot] != 0 && keys[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        if (counts[slot] == 0 || --counts[slot] > 0) {
+            return;
+        }
+        size--;
+
+        // shift later entries of the same run back into the gap, so lookups never stop early
+        int gap = slot;
+        for (int next = (gap + 1) & mask; counts[next] != 0; next = (next + 1) & mask) {
+            int home = slot(keys[next], mask);
+            if ((next - home & mask) >= (next - gap & mask)) {
+                keys[gap] = keys[next];
+                counts[gap] = counts[next];
+                counts[next] = 0;
+                gap = next;
+            }
+        }
+    }
+
+    /**
+     * Returns how many times the position has occurred.
+     */
+    int count(long hash) {
+        int mask = keys.length - 1;
+        for (int slot = slot(hash, mask); counts[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == hash) {
+                return counts[slot];
+            }
+        }
+        return 0;
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    private static int slot(long hash, int mask) {
+        return (int) (hash ^ hash >>> 32) & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = slot(oldKeys[i], mask);
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
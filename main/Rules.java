@@ -0,0 +1,90 @@
+/**
+ * This class lists the rule sets DraughtsModel can play, with the board each
+ * one is played on.
+ *
+ * ENGLISH is this game's own checkers, exactly as CheckersModel plays it:
+ * 8x8, men move and capture forwards only, kings move one square, a capture
+ * is never forced (but once a piece starts jumping it must jump on while it
+ * can), a captured piece leaves the board at once, and a man that jumps onto
+ * the far row is crowned and its move ends.
+ *
+ * INTERNATIONAL is 10x10 draughts: men capture backwards as well as forwards,
+ * kings fly any distance along a diagonal, capturing is compulsory and the
+ * player must take the sequence that captures the most pieces. Captured
+ * pieces stay on the board (so they block, but cannot be jumped twice) until
+ * the move ends, and a man is only crowned if its move ends on the far row.
+ */
+public enum Rules {
+
+    ENGLISH(BoardGeometry.EIGHT, 3, false, false, false, false, true, true),
+    INTERNATIONAL(BoardGeometry.TEN, 4, true, true, true, true, false, false);
+
+    private final BoardGeometry geometry;
+    private final int startRows;
+    private final boolean menCaptureBackwards;
+    private final boolean flyingKings;
+    private final boolean compulsoryCapture;
+    private final boolean majorityCapture;
+    private final boolean removeCapturedAtOnce;
+    private final boolean crowningEndsCapture;
+
+    Rules(BoardGeometry geometry, int startRows, boolean menCaptureBackwards,
+          boolean flyingKings, boolean compulsoryCapture, boolean majorityCapture,
+          boolean removeCapturedAtOnce, boolean crowningEndsCapture) {
+        this.geometry = geometry;
+        this.startRows = startRows;
+        this.menCaptureBackwards = menCaptureBackwards;
+        this.flyingKings = flyingKings;
+        this.compulsoryCapture = compulsoryCapture;
+        this.majorityCapture = majorityCapture;
+        this.removeCapturedAtOnce = removeCapturedAtOnce;
+        this.crowningEndsCapture = crowningEndsCapture;
+    }
+
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Returns how many rows each side fills at the start.
+     */
+    public int getStartRows() {
+        return startRows;
+    }
+
+    public boolean menCaptureBackwards() {
+        return menCaptureBackwards;
+    }
+
+    public boolean hasFlyingKings() {
+        return flyingKings;
+    }
+
+    public boolean isCaptureCompulsory() {
+        return compulsoryCapture;
+    }
+
+    /**
+     * Returns true if only the captures that take the most pieces are legal.
+     */
+    public boolean isMajorityCapture() {
+        return majorityCapture;
+    }
+
+    /**
+     * Returns true if each captured piece leaves the board as it is jumped,
+     * false if the captured pieces are all lifted at the end of the move.
+     */
+    public boolean removesCapturedAtOnce() {
+        return removeCapturedAtOnce;
+    }
+
+    /**
+     * Returns true if a man that jumps onto the far row is crowned there and
+     * stops, false if it jumps on as a man (and is only crowned if the move
+     * ends on the far row).
+     */
+    public boolean crowningEndsCapture() {
+        return crowningEndsCapture;
+    }
+}
@@ -55,6 +55,10 @@ public class RunCheckers implements Runnable {
         load.addActionListener(e -> board.loadGame());
         control_panel.add(load);
 
+        final JCheckBox computer = new JCheckBox("Play the computer");
+        computer.addActionListener(e -> board.setComputerOpponent(computer.isSelected()));
+        control_panel.add(computer);
+
         String instructionMessage = "For this project I chose to implement a classic " +
                 "game of checkers!\n" +
                 "\n" +
@@ -72,6 +76,8 @@ public class RunCheckers implements Runnable {
                 "- Same rules apply to kings but they can move in both directions\n" +
                 "- The first player to have all their pieces captured OR have no possible " +
                 "moves left LOSES the game\n" +
+                "- The game is a draw if the same position comes up for the third time, or " +
+                "after 80 moves in a row (40 each) with no capture and no regular piece moved\n" +
                 "\n" +
                 "FEATURES I ADDED:\n" +
                 "- game does not allow the player to make illegal moves (including " +
@@ -79,7 +85,11 @@ public class RunCheckers implements Runnable {
                 "- highlights the piece which user has selected (and is about to move)\n" +
                 "- the ability to pause the game (via saving/loading to and from a text file)\n" +
                 "- undo feature, where the user has unlimited undo until the start of the " +
-                "game (or when the game was loaded in)";
+                "game (or when the game was loaded in)\n" +
+                "- every move is saved as it is made, so closing the game (or a crash) " +
+                "loses nothing: it starts again where you left off, undo history and all\n" +
+                "- a computer opponent that plays RED (tick \"Play the computer\"), which " +
+                "thinks in the background and keeps thinking during your turn";
 
         final JButton instructions = new JButton("Instructions");
         instructions.addActionListener(e ->
@@ -91,7 +101,7 @@ public class RunCheckers implements Runnable {
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setVisible(true);
 
-        // Start the game
-        board.reset();
+        // Start the game, carrying on from the last one if it was not finished
+        board.resume();
     }
 }
@@ -0,0 +1,362 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * This class is a computer opponent for Checkers.
+ *
+ * It searches the position in a CheckersModel with iterative deepening
+ * negamax and alpha-beta pruning, then keeps searching captures past the
+ * depth limit (quiescence) so that a position is never scored in the
+ * middle of an exchange. Positions are scored with the model's own
+ * evaluate, using its Evaluator. The search stops at the configured depth
+ * or once it has visited the configured number of positions, whichever is
+ * first.
+ *
+ * Moves are played on the model with makeMove/unmakeMove, so the model is
+ * left exactly as it was when search returns. All move lists live in
+ * buffers allocated once per engine. Results are kept in a
+ * TranspositionTable so positions reached by different move orders are
+ * only searched once. If a Tablebase is set, positions it covers are scored
+ * from it instead of being searched, and if an OpeningBook is set, positions
+ * in the book are answered from it without searching at all.
+ */
+public class SearchEngine {
+
+    public static final int WIN_SCORE = 100000;
+    public static final int DEFAULT_TABLE_MEGABYTES = 16;
+
+    private static final int MAX_PLY = 128;
+
+    private final int maxDepth;
+    private final long nodeLimit;
+    private final TranspositionTable table;
+    private Tablebase tablebase;
+    private OpeningBook book;
+    private Consumer<SearchResult> progress;
+
+    private final int[][] moveBuffers = new int[MAX_PLY][CheckersModel.MAX_MOVES];
+
+    private CheckersModel cm;
+    private AtomicBoolean stopSignal;
+    private long nodes;
+    private boolean stopped;
+
+    /**
+     * Creates an engine that searches at most maxDepth moves ahead and stops
+     * early once it has visited nodeLimit positions.
+     */
+    public SearchEngine(int maxDepth, long nodeLimit) {
+        this(maxDepth, nodeLimit, new TranspositionTable(DEFAULT_TABLE_MEGABYTES));
+    }
+
+    /**
+     * Creates an engine that stores its results in the given table.
+     */
+    public SearchEngine(int maxDepth, long nodeLimit, TranspositionTable table) {
+        this.maxDepth = Math.min(maxDepth, MAX_PLY / 2);
+        this.nodeLimit = nodeLimit;
+        this.table = table;
+    }
+
+    /**
+     * Sets the endgame tables to score positions with few pieces from, or
+     * null to search every position.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * Sets the opening book to play from before searching, or null to
+     * always search.
+     */
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * Sets a listener that is given the result of every completed iteration
+     * as the search deepens, on the thread running the search, or null for
+     * none.
+     */
+    public void setProgressListener(Consumer<SearchResult> progress) {
+        this.progress = progress;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Searches for the best move for the player whose turn it is. Returns a
+     * result with move -1 if that player has no legal moves.
+     */
+    public SearchResult search(CheckersModel model) {
+        SearchResult booked = bookMove(model);
+        if (booked != null) {
+            return booked;
+        }
+        table.newSearch();
+        return search(model, 1, new AtomicBoolean());
+    }
+
+    /**
+     * Returns the opening book's move for the position as a depth 0 result,
+     * or null if there is no book or the position is not in it.
+     */
+    SearchResult bookMove(CheckersModel model) {
+        if (book == null) {
+            return null;
+        }
+        int move = book.lookup(model);
+        if (move == -1) {
+            return null;
+        }
+        // only trust the book's move if it is legal here
+        int[] moves = moveBuffers[0];
+        int count = model.generateMoves(moves);
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                return new SearchResult(move, 0, 0, 0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Searches starting from the given depth, and gives up as soon as
+     * possible once stop is set (by another thread). The result is then from
+     * the last depth completed. Unlike search(model), this does not start a
+     * new search generation in the table, since the table may be shared.
+     */
+    public SearchResult search(CheckersModel model, int firstDepth, AtomicBoolean stop) {
+        // readers of the model keep seeing the position the search started from
+        boolean publishing = model.isPublishing();
+        model.setPublishing(false);
+        try {
+            return iterate(model, firstDepth, stop);
+        } finally {
+            model.setPublishing(publishing);
+        }
+    }
+
+    private SearchResult iterate(CheckersModel model, int firstDepth, AtomicBoolean stop) {
+        cm = model;
+        stopSignal = stop;
+        nodes = 0;
+        stopped = false;
+
+        int[] rootMoves = moveBuffers[0];
+        int count = cm.generateMoves(rootMoves);
+        if (count == 0) {
+            return new SearchResult(-1, -WIN_SCORE, 0, 0);
+        }
+        long rootEntry = table.probe(cm.getHash());
+        if (rootEntry != 0) {
+            moveToFront(rootMoves, count, TranspositionTable.entryMove(rootEntry));
+        }
+
+        int bestMove = rootMoves[0];
+        int bestScore = 0;
+        int completedDepth = 0;
+
+        for (int depth = Math.min(firstDepth, maxDepth); depth <= maxDepth; depth++) {
+            int alpha = -WIN_SCORE - 1;
+            int iterationMove = rootMoves[0];
+            for (int i = 0; i < count; i++) {
+                int score = searchChild(rootMoves[i], depth - 1, alpha, WIN_SCORE + 1, 1);
+                if (stopped) {
+                    break;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    iterationMove = rootMoves[i];
+                }
+            }
+            if (stopped) {
+                break;
+            }
+
+            bestMove = iterationMove;
+            bestScore = alpha;
+            completedDepth = depth;
+            table.store(cm.getHash(), bestMove, bestScore, depth, TranspositionTable.EXACT);
+            if (progress != null) {
+                progress.accept(new SearchResult(bestMove, bestScore, depth, nodes));
+            }
+
+            // search the best move first in the next iteration
+            moveToFront(rootMoves, count, bestMove);
+
+            if (Math.abs(bestScore) >= WIN_SCORE - MAX_PLY) {
+                break;
+            }
+        }
+        return new SearchResult(bestMove, bestScore, completedDepth, nodes);
+    }
+
+    // helper function to play a move and score it from the point of view of the player who made it
+    private int searchChild(int move, int depth, int alpha, int beta, int ply) {
+        boolean player = cm.getCurrentPlayer();
+        cm.makeMove(move);
+        int score;
+        if (cm.getCurrentPlayer() != player) {
+            score = -negamax(depth, -beta, -alpha, ply);
+        } else {
+            // the same player moves again (a jump that is still in progress)
+            score = negamax(depth, alpha, beta, ply);
+        }
+        cm.unmakeMove(move);
+        return score;
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        if (cm.isDraw()) {
+            return 0;
+        }
+        if (depth <= 0 || ply >= MAX_PLY - 1) {
+            return quiesce(alpha, beta, ply);
+        }
+        if (++nodes >= nodeLimit || (nodes & 1023) == 0 && stopSignal.get()) {
+            stopped = true;
+            return 0;
+        }
+
+        if (tablebase != null) {
+            int known = tablebase.probe(cm);
+            if (known != Tablebase.NOT_FOUND && withinDrawRules(known)) {
+                return tablebaseScore(known, ply);
+            }
+        }
+
+        long hash = cm.getHash();
+        long entry = table.probe(hash);
+        int tableMove = -1;
+        if (entry != 0) {
+            tableMove = TranspositionTable.entryMove(entry);
+            if (TranspositionTable.entryDepth(entry) >= depth) {
+                int score = fromTableScore(TranspositionTable.entryScore(entry), ply);
+                int bound = TranspositionTable.entryBound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || bound == TranspositionTable.LOWER_BOUND && score >= beta
+                        || bound == TranspositionTable.UPPER_BOUND && score <= alpha) {
+                    return score;
+                }
+            }
+        }
+
+        int[] moves = moveBuffers[ply];
+        int count = cm.generateMoves(moves);
+        if (count == 0) {
+            return -WIN_SCORE + ply;
+        }
+        if (tableMove != -1) {
+            moveToFront(moves, count, tableMove);
+        }
+
+        int originalAlpha = alpha;
+        int bestMove = moves[0];
+        for (int i = 0; i < count; i++) {
+            int score = searchChild(moves[i], depth - 1, alpha, beta, ply + 1);
+            if (stopped) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestMove = moves[i];
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+
+        int bound = alpha >= beta ? TranspositionTable.LOWER_BOUND
+                : alpha > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+        table.store(hash, bestMove, toTableScore(alpha, ply), depth, bound);
+        return alpha;
+    }
+
+    // helper function to check that the game cannot be drawn by the quiet moves rule before a
+    // tablebase win or loss is over, since the tables are solved without that rule
+    private boolean withinDrawRules(int entry) {
+        return Tablebase.result(entry) == Tablebase.DRAW || cm.getDrawMoves() == 0
+                || Tablebase.distance(entry) <= cm.getDrawMoves() - cm.getQuietMoves();
+    }
+
+    // tablebase wins score below WIN_SCORE - MAX_PLY, since they can be further away than MAX_PLY
+    private static int tablebaseScore(int entry, int ply) {
+        int result = Tablebase.result(entry);
+        if (result == Tablebase.DRAW) {
+            return 0;
+        }
+        int score = WIN_SCORE / 2 - ply - Tablebase.distance(entry);
+        return result == Tablebase.WIN ? score : -score;
+    }
+
+    // win scores are stored relative to the position rather than the root of the search
+    private static int toTableScore(int score, int ply) {
+        if (score >= WIN_SCORE - MAX_PLY) {
+            return score + ply;
+        } else if (score <= -WIN_SCORE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTableScore(int score, int ply) {
+        if (score >= WIN_SCORE - MAX_PLY) {
+            return score - ply;
+        } else if (score <= -WIN_SCORE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    // keeps searching captures until the position is quiet
+    private int quiesce(int alpha, int beta, int ply) {
+        if (++nodes >= nodeLimit || (nodes & 1023) == 0 && stopSignal.get()) {
+            stopped = true;
+            return 0;
+        }
+
+        int[] moves = moveBuffers[ply];
+        int count = cm.generateMoves(moves);
+        if (count == 0) {
+            return -WIN_SCORE + ply;
+        }
+
+        // captures are optional, so the player can always stand on the current score
+        int standPat = cm.evaluate();
+        if (standPat >= beta || ply >= MAX_PLY - 1) {
+            return standPat;
+        }
+        if (standPat > alpha) {
+            alpha = standPat;
+        }
+
+        // jumps are listed first
+        for (int i = 0; i < count && CheckersModel.moveJumps(moves[i]) > 0; i++) {
+            int score = searchChild(moves[i], 0, alpha, beta, ply + 1);
+            if (stopped) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+        return alpha;
+    }
+
+    private static void moveToFront(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return;
+            }
+        }
+    }
+}
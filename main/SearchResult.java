@@ -0,0 +1,36 @@
+/**
+ * This class holds the outcome of a SearchEngine search: the best move found
+ * (packed the same way as CheckersModel.generateMoves), its score from the
+ * point of view of the player to move, the deepest iteration completed, and
+ * the number of positions visited.
+ */
+public class SearchResult {
+
+    private final int move;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+
+    public SearchResult(int move, int score, int depth, long nodes) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+    }
+
+    public int getMove() {
+        return move;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+}
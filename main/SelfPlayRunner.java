@@ -0,0 +1,297 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * This class plays many games between two move-selection policies without
+ * any user interface, spread over a fixed number of threads.
+ *
+ * Games start from the new game position or from the positions in a
+ * GameArchive (game i starts at archive position i, wrapping around). Each
+ * finished game is handed to a sink as soon as it ends, so results stream
+ * out while the run continues. Only a bounded number of games wait to be
+ * played, so memory use does not grow with the number of games. Every game
+ * depends only on the seed and its game number, never on which thread plays
+ * it or what that thread played before, so a run can be reproduced.
+ *
+ * Usage: java SelfPlayRunner [games=N] [threads=N] [black=POLICY] [red=POLICY]
+ *                            [maxMoves=N] [randomMoves=N] [seed=N] [start=ARCHIVE]
+ * where POLICY is random, first, or engine:DEPTH. Results are printed one
+ * game per line: game number, winner (1 black, 2 red, 3 draw, 0 unfinished),
+ * number of moves, then the moves.
+ */
+public class SelfPlayRunner {
+
+    /**
+     * Picks one of the count legal moves in moves for the model's position.
+     * A policy is only ever used by one thread at a time.
+     */
+    public interface MovePolicy {
+        int chooseMove(CheckersModel cm, int[] moves, int count, SplittableRandom random);
+
+        /**
+         * Called before every game, so a policy with state (such as an
+         * engine's table) starts each game exactly as it started the first.
+         */
+        default void newGame() {
+        }
+    }
+
+    /**
+     * A finished game: the moves played (packed as in generateMoves) and the
+     * winner as reported by checkWinner, or 0 if the move limit was reached.
+     */
+    public static class GameResult {
+        private final int game;
+        private final int winner;
+        private final int[] moves;
+
+        public GameResult(int game, int winner, int[] moves) {
+            this.game = game;
+            this.winner = winner;
+            this.moves = moves;
+        }
+
+        public int getGame() {
+            return game;
+        }
+
+        public int getWinner() {
+            return winner;
+        }
+
+        public int getLength() {
+            return moves.length;
+        }
+
+        public int[] getMoves() {
+            return moves.clone();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder();
+            s.append(game).append('\t').append(winner).append('\t').append(moves.length)
+                    .append('\t');
+            for (int i = 0; i < moves.length; i++) {
+                if (i > 0) {
+                    s.append(' ');
+                }
+                s.append(Perft.moveToString(moves[i]));
+            }
+            return s.toString();
+        }
+    }
+
+    public static MovePolicy randomPolicy() {
+        return (cm, moves, count, random) -> moves[random.nextInt(count)];
+    }
+
+    public static MovePolicy firstMovePolicy() {
+        return (cm, moves, count, random) -> moves[0];
+    }
+
+    public static MovePolicy enginePolicy(int depth, long nodeLimit, int tableMegabytes) {
+        SearchEngine engine = new SearchEngine(depth, nodeLimit,
+                new TranspositionTable(tableMegabytes));
+        return new MovePolicy() {
+            @Override
+            public int chooseMove(CheckersModel cm, int[] moves, int count,
+                                  SplittableRandom random) {
+                return engine.search(cm).getMove();
+            }
+
+            @Override
+            public void newGame() {
+                engine.getTable().clear();
+            }
+        };
+    }
+
+    private final int threads;
+    private final ThreadLocal<MovePolicy> blackPolicy;
+    private final ThreadLocal<MovePolicy> redPolicy;
+    private final int maxMoves;
+    private final int randomMoves;
+    private final long seed;
+    private final GameArchive.Reader startPositions;
+
+    /**
+     * Creates a runner. The policy suppliers are called once per thread, so
+     * policies with state (such as an engine) are never shared. The first
+     * randomMoves moves of every game are picked at random to vary the
+     * games; startPositions may be null to start from a new game.
+     */
+    public SelfPlayRunner(int threads, Supplier<MovePolicy> black, Supplier<MovePolicy> red,
+                          int maxMoves, int randomMoves, long seed,
+                          GameArchive.Reader startPositions) {
+        this.threads = threads;
+        this.blackPolicy = ThreadLocal.withInitial(black);
+        this.redPolicy = ThreadLocal.withInitial(red);
+        this.maxMoves = maxMoves;
+        this.randomMoves = randomMoves;
+        this.seed = seed;
+        this.startPositions = startPositions;
+    }
+
+    /**
+     * Plays games and passes each result to sink as it finishes (from the
+     * worker threads, in any order). Returns once every game has finished.
+     * Games are only played on the worker threads; this thread waits
+     * whenever enough games are already waiting. If a game, a policy or the
+     * sink throws, no more games are started, and once the games already
+     * started are over the first exception is thrown from here.
+     */
+    public void run(int games, Consumer<GameResult> sink) throws InterruptedException {
+        // a permit for every game waiting or being played, so the queue never fills
+        Semaphore permits = new Semaphore(threads * 4);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0L,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threads * 4));
+        try {
+            for (int game = 0; game < games && failure.get() == null; game++) {
+                int id = game;
+                permits.acquire();
+                pool.execute(() -> {
+                    try {
+                        if (failure.get() == null) {
+                            sink.accept(playGame(id));
+                        }
+                    } catch (RuntimeException | Error e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+        }
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+
+        Throwable thrown = failure.get();
+        if (thrown instanceof Error) {
+            throw (Error) thrown;
+        } else if (thrown != null) {
+            throw (RuntimeException) thrown;
+        }
+    }
+
+    /**
+     * Plays the game with the given number in the calling thread.
+     */
+    public GameResult playGame(int game) {
+        CheckersModel cm = new CheckersModel();
+        if (startPositions != null) {
+            startPositions.loadPosition(game % startPositions.getPositionCount(), cm);
+        }
+        SplittableRandom random = new SplittableRandom(seed + game);
+        MovePolicy black = blackPolicy.get();
+        MovePolicy red = redPolicy.get();
+        black.newGame();
+        red.newGame();
+
+        int[] moves = new int[CheckersModel.MAX_MOVES];
+        int[] played = new int[maxMoves];
+        int length = 0;
+        int winner = cm.checkWinner();
+        while (winner == 0 && length < maxMoves) {
+            int count = cm.generateMoves(moves);
+            int move;
+            if (length < randomMoves) {
+                move = moves[random.nextInt(count)];
+            } else {
+                MovePolicy policy = cm.getCurrentPlayer() ? black : red;
+                move = policy.chooseMove(cm, moves, count, random);
+            }
+            cm.makeMove(move);
+            played[length++] = move;
+            winner = cm.checkWinner();
+        }
+        return new GameResult(game, winner, Arrays.copyOf(played, length));
+    }
+
+    // helper function to turn a POLICY argument into a policy supplier
+    private static Supplier<MovePolicy> parsePolicy(String name) {
+        if (name.equals("random")) {
+            return SelfPlayRunner::randomPolicy;
+        } else if (name.equals("first")) {
+            return SelfPlayRunner::firstMovePolicy;
+        } else if (name.startsWith("engine:")) {
+            int depth = Integer.parseInt(name.substring("engine:".length()));
+            return () -> enginePolicy(depth, Long.MAX_VALUE, 16);
+        }
+        throw new IllegalArgumentException("Unknown policy: " + name);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int games = 100;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String black = "engine:6";
+        String red = "engine:6";
+        int maxMoves = 200;
+        int randomMoves = 4;
+        long seed = 1;
+        String start = null;
+        for (String arg : args) {
+            String[] keyValue = arg.split("=", 2);
+            String key = keyValue[0];
+            String value = keyValue.length > 1 ? keyValue[1] : "";
+            if (key.equals("games")) {
+                games = Integer.parseInt(value);
+            } else if (key.equals("threads")) {
+                threads = Integer.parseInt(value);
+            } else if (key.equals("black")) {
+                black = value;
+            } else if (key.equals("red")) {
+                red = value;
+            } else if (key.equals("maxMoves")) {
+                maxMoves = Integer.parseInt(value);
+            } else if (key.equals("randomMoves")) {
+                randomMoves = Integer.parseInt(value);
+            } else if (key.equals("seed")) {
+                seed = Long.parseLong(value);
+            } else if (key.equals("start")) {
+                start = value;
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        GameArchive.Reader startPositions = start == null ? null
+                : new GameArchive.Reader(Paths.get(start));
+        SelfPlayRunner runner = new SelfPlayRunner(threads, parsePolicy(black),
+                parsePolicy(red), maxMoves, randomMoves, seed, startPositions);
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+        long begin = System.nanoTime();
+        runner.run(games, result -> {
+            synchronized (out) {
+                try {
+                    out.write(result.toString());
+                    out.write('\n');
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        long elapsed = Math.max(System.nanoTime() - begin, 1);
+        System.err.println(games + " games in " + elapsed / 1000000 + " ms");
+        if (startPositions != null) {
+            startPositions.close();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class looks up exact results for positions with few pieces left, from
+ * endgame tables written by TablebaseGenerator.
+ *
+ * There is one file per material balance (black men, black kings, red men,
+ * red kings). A file holds a 16 byte header and then one 16-bit entry per
+ * position, first every position with black to move and then every position
+ * with red to move. An entry packs the result for the player to move in its
+ * top two bits (DRAW, WIN or LOSS) and the number of moves (plies) until the
+ * game is over, with best play, in the rest.
+ *
+ * Only positions with every piece on the dark squares, no jump in progress
+ * and no more pieces than the tables cover can be looked up. The files are
+ * memory-mapped when the Tablebase is opened, so probe allocates nothing.
+ *
+ * The tables are solved without CheckersModel's draw rules: a win may take
+ * more quiet moves than getDrawMoves allows, and the history before the
+ * position (and so a threefold repetition) is not known. SearchEngine only
+ * trusts a win or loss that ends within the quiet moves left; repetitions
+ * of positions from before the probe are not accounted for.
+ */
+public class Tablebase implements Closeable {
+
+    public static final int NOT_FOUND = -1;
+    public static final int DRAW = 0;
+    public static final int WIN = 1;
+    public static final int LOSS = 2;
+
+    static final int MAGIC = 0x434B5442; // "CKTB"
+    static final int HEADER_BYTES = 16;
+    static final int MAX_PIECES_PER_KIND = 15;
+
+    private static final long ROW_0 = 0x00000000000000FFL;
+    private static final long ROW_7 = 0xFF00000000000000L;
+    static final long DARK_SQUARES = 0x55AA55AA55AA55AAL;
+
+    // BINOMIAL[n][k] is n choose k
+    static final long[][] BINOMIAL = new long[33][33];
+
+    // the 32 dark squares in order, as board squares (row * 8 + col), and back again
+    static final int[] BOARD_SQUARE = new int[32];
+    static final int[] DARK_SQUARE = new int[64];
+
+    static {
+        for (int n = 0; n <= 32; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= n; k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+        java.util.Arrays.fill(DARK_SQUARE, -1);
+        for (int i = 0; i < 32; i++) {
+            int row = i / 4;
+            int col = 2 * (i % 4) + (row % 2 == 0 ? 1 : 0);
+            BOARD_SQUARE[i] = row * 8 + col;
+            DARK_SQUARE[row * 8 + col] = i;
+        }
+    }
+
+    private final MappedByteBuffer[] tables = new MappedByteBuffer[1 << 16];
+    private final int maxPieces;
+
+    /**
+     * Opens every table file in the directory.
+     */
+    public Tablebase(Path directory) throws IOException {
+        int most = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "tb_*.bin")) {
+            for (Path file : files) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                            channel.size());
+                    table.order(ByteOrder.LITTLE_ENDIAN);
+                    if (channel.size() < HEADER_BYTES || table.getInt(0) != MAGIC) {
+                        throw new IOException("Not an endgame table: " + file);
+                    }
+                    int material = table.getInt(4);
+                    long entries = table.getLong(8);
+                    if (channel.size() != HEADER_BYTES + 4 * entries
+                            || entries != entriesPerSide(material)) {
+                        throw new IOException("Endgame table is the wrong size: " + file);
+                    }
+                    tables[material] = table;
+                    most = Math.max(most, pieces(material));
+                }
+            }
+        }
+        maxPieces = most;
+    }
+
+    /**
+     * Returns the largest number of pieces any open table covers.
+     */
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    /**
+     * Returns the table entry for the model's position, or NOT_FOUND if
+     * the position is not covered. Use result and distance to read it.
+     */
+    public int probe(CheckersModel cm) {
+        if (cm.getIsJumpAgain()) {
+            return NOT_FOUND;
+        }
+        int bm = cm.getPieceCount(CheckersModel.BLACK);
+        int bk = cm.getPieceCount(CheckersModel.BLACK_KING);
+        int rm = cm.getPieceCount(CheckersModel.RED);
+        int rk = cm.getPieceCount(CheckersModel.RED_KING);
+        if (bm + bk + rm + rk > maxPieces || bm + bk == 0 || rm + rk == 0) {
+            return NOT_FOUND;
+        }
+        MappedByteBuffer table = tables[material(bm, bk, rm, rk)];
+        long black = cm.getBlackPieces();
+        long red = cm.getRedPieces();
+        long kings = cm.getKingPieces();
+        if (table == null || !isIndexable(black, red, kings)) {
+            return NOT_FOUND;
+        }
+        long index = index(black, red, kings, bm, bk, rm, rk, cm.getCurrentPlayer());
+        return table.getShort((int) (HEADER_BYTES + 2 * index)) & 0xFFFF;
+    }
+
+    public static int result(int entry) {
+        return entry >>> 14;
+    }
+
+    public static int distance(int entry) {
+        return entry & 0x3FFF;
+    }
+
+    static int entry(int result, int distance) {
+        return result << 14 | distance;
+    }
+
+    // the material code used to find a table: four 4-bit piece counts
+    static int material(int bm, int bk, int rm, int rk) {
+        return bm << 12 | bk << 8 | rm << 4 | rk;
+    }
+
+    static int pieces(int material) {
+        return (material >>> 12) + (material >>> 8 & 15) + (material >>> 4 & 15) + (material & 15);
+    }
+
+    static long entriesPerSide(int material) {
+        return BINOMIAL[32][material >>> 12] * BINOMIAL[32][material >>> 8 & 15]
+                * BINOMIAL[32][material >>> 4 & 15] * BINOMIAL[32][material & 15];
+    }
+
+    static String fileName(int material) {
+        return "tb_" + (material >>> 12) + "_" + (material >>> 8 & 15) + "_"
+                + (material >>> 4 & 15) + "_" + (material & 15) + ".bin";
+    }
+
+    // true if the pieces are all on dark squares and no man sits on the row it promotes on
+    static boolean isIndexable(long black, long red, long kings) {
+        return ((black | red) & ~DARK_SQUARES) == 0
+                && (black & ~kings & ROW_7) == 0 && (red & ~kings & ROW_0) == 0;
+    }
+
+    /**
+     * Returns the position's index within its table. Each kind of piece
+     * is ranked as a set of dark squares (combinatorial number system), and
+     * the four ranks are combined as digits.
+     */
+    static long index(long black, long red, long kings, int bm, int bk, int rm, int rk,
+                      boolean blackToMove) {
+        long index = rank(black & ~kings);
+        index = index * BINOMIAL[32][bk] + rank(black & kings);
+        index = index * BINOMIAL[32][rm] + rank(red & ~kings);
+        index = index * BINOMIAL[32][rk] + rank(red & kings);
+        if (!blackToMove) {
+            index += BINOMIAL[32][bm] * BINOMIAL[32][bk] * BINOMIAL[32][rm] * BINOMIAL[32][rk];
+        }
+        return index;
+    }
+
+    // helper function to rank the set of squares in a mask among all sets of that size
+    static long rank(long mask) {
+        long rank = 0;
+        int i = 1;
+        while (mask != 0) {
+            int square = DARK_SQUARE[Long.numberOfTrailingZeros(mask)];
+            mask &= mask - 1;
+            rank += BINOMIAL[square][i++];
+        }
+        return rank;
+    }
+
+    // helper function to turn a rank back into the mask of its k squares
+    static long unrank(long rank, int k) {
+        long mask = 0;
+        int square = 31;
+        for (int i = k; i >= 1; i--) {
+            while (BINOMIAL[square][i] > rank) {
+                square--;
+            }
+            mask |= 1L << BOARD_SQUARE[square];
+            rank -= BINOMIAL[square][i];
+            square--;
+        }
+        return mask;
+    }
+
+    /**
+     * Releases the tables. Mapped memory is freed once the Tablebase is no
+     * longer reachable.
+     */
+    @Override
+    public void close() {
+        java.util.Arrays.fill(tables, null);
+    }
+}
@@ -0,0 +1,328 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * This class solves every position with up to a given number of pieces and
+ * writes the results as the table files read by Tablebase.
+ *
+ * Tables are solved from the fewest pieces up, and within the same number of
+ * pieces from the fewest men up, so every capture or promotion leads into a
+ * table that is already solved. Inside one table the only moves are simple
+ * moves that do not promote, and those can be played backwards, so each
+ * table is solved by retrograde analysis: positions with no moves are losses,
+ * and results are pushed back one move at a time to the positions that lead
+ * to them. Whatever is left unresolved is a draw. Moves are generated by
+ * CheckersModel, so the tables follow exactly the same rules as the game.
+ *
+ * Usage: java TablebaseGenerator PIECES [DIRECTORY]
+ */
+public class TablebaseGenerator {
+
+    // status of a position still being solved; solved positions hold their entry
+    private static final int UNKNOWN = 0;
+    private static final int INVALID = -1;
+
+    private static final int MAX_DISTANCE = (1 << 14) - 1;
+
+    private static final long NOT_COL_0 = 0xFEFEFEFEFEFEFEFEL;
+    private static final long NOT_COL_7 = 0x7F7F7F7F7F7F7F7FL;
+
+    private final Map<Integer, short[]> solved = new HashMap<>();
+    private final ThreadLocal<CheckersModel> models = ThreadLocal.withInitial(() -> {
+        CheckersModel cm = new CheckersModel();
+        cm.setPublishing(false);
+        return cm;
+    });
+    private final ThreadLocal<int[]> moveBuffers =
+            ThreadLocal.withInitial(() -> new int[CheckersModel.MAX_MOVES]);
+
+    /**
+     * Solves every table with at most maxPieces pieces (at least one for
+     * each side) and writes them into directory.
+     */
+    public void generate(Path directory, int maxPieces) throws IOException {
+        if (maxPieces < 2 || maxPieces > Tablebase.MAX_PIECES_PER_KIND) {
+            throw new IllegalArgumentException("Pieces must be between 2 and "
+                    + Tablebase.MAX_PIECES_PER_KIND);
+        }
+        Files.createDirectories(directory);
+        for (int total = 2; total <= maxPieces; total++) {
+            for (int men = 0; men <= total; men++) {
+                for (int bm = 0; bm <= men; bm++) {
+                    for (int bk = 0; bk <= total - men; bk++) {
+                        int rm = men - bm;
+                        int rk = total - men - bk;
+                        if (bm + bk > 0 && rm + rk > 0) {
+                            int material = Tablebase.material(bm, bk, rm, rk);
+                            short[] table = solve(material);
+                            solved.put(material, table);
+                            write(directory.resolve(Tablebase.fileName(material)), material,
+                                    table);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Solves one table. Every smaller table it can lead into must already
+     * be solved. Returns the entries, black to move first.
+     */
+    short[] solve(int material) {
+        long perSide = Tablebase.entriesPerSide(material);
+        if (2 * perSide > 1 << 30) {
+            throw new IllegalArgumentException("Table too large: " + Tablebase.fileName(material));
+        }
+        int size = (int) (2 * perSide);
+        AtomicIntegerArray status = new AtomicIntegerArray(size);
+        // moves left to see before a position can be called a loss
+        AtomicIntegerArray unresolvedMoves = new AtomicIntegerArray(size);
+        // longest win reached by a capture or promotion, or -1
+        int[] longestExitWin = new int[size];
+        Map<Integer, Bucket> buckets = new ConcurrentHashMap<>();
+
+        IntStream.range(0, size).parallel().forEach(i ->
+                classify(material, i, status, unresolvedMoves, longestExitWin, buckets));
+
+        // positions are solved in order of distance, so wins are always as
+        // short and losses as long as possible
+        for (int distance = 0; !buckets.isEmpty(); distance++) {
+            Bucket bucket = buckets.remove(distance);
+            if (bucket == null) {
+                continue;
+            }
+            if (distance > MAX_DISTANCE) {
+                throw new IllegalStateException("Distance too long to store");
+            }
+            int d = distance;
+            int[] found = bucket.toArray();
+            int[] solvedNow = IntStream.of(found).parallel().filter(item ->
+                    status.compareAndSet(item >>> 1, UNKNOWN,
+                            Tablebase.entry((item & 1) == 1 ? Tablebase.WIN : Tablebase.LOSS, d)))
+                    .map(item -> item >>> 1).toArray();
+            IntStream.of(solvedNow).parallel().forEach(i ->
+                    retract(material, i, d, status, unresolvedMoves, longestExitWin, buckets));
+        }
+
+        short[] table = new short[size];
+        for (int i = 0; i < size; i++) {
+            int value = status.get(i);
+            table[i] = (short) (value == INVALID ? 0 : value);
+        }
+        return table;
+    }
+
+    // helper function to look at every move from a position before solving starts
+    private void classify(int material, int i, AtomicIntegerArray status,
+                          AtomicIntegerArray unresolvedMoves, int[] longestExitWin,
+                          Map<Integer, Bucket> buckets) {
+        long[] position = unindex(material, i);
+        long black = position[0];
+        long red = position[1];
+        long kings = position[2];
+        if ((black & red) != 0 || Long.bitCount(black | red) != Tablebase.pieces(material)
+                || !Tablebase.isIndexable(black, red, kings)) {
+            status.set(i, INVALID);
+            return;
+        }
+        boolean blackToMove = i < Tablebase.entriesPerSide(material);
+
+        CheckersModel cm = models.get();
+        int[] moves = moveBuffers.get();
+        cm.setPosition(black, red, kings, blackToMove, -1);
+        int count = cm.generateMoves(moves);
+
+        int inTable = 0;
+        int shortestExitLoss = -1;
+        int longestWin = -1;
+        boolean exitDraw = false;
+        for (int m = 0; m < count; m++) {
+            cm.makeMove(moves[m]);
+            int child = lookup(cm, material);
+            cm.unmakeMove(moves[m]);
+            if (child == INVALID) {
+                inTable++;
+            } else if (Tablebase.result(child) == Tablebase.LOSS) {
+                int d = Tablebase.distance(child);
+                if (shortestExitLoss < 0 || d < shortestExitLoss) {
+                    shortestExitLoss = d;
+                }
+            } else if (Tablebase.result(child) == Tablebase.WIN) {
+                longestWin = Math.max(longestWin, Tablebase.distance(child));
+            } else {
+                exitDraw = true;
+            }
+        }
+
+        longestExitWin[i] = longestWin;
+        // a move that does not lose means this position is never lost
+        boolean neverLost = shortestExitLoss >= 0 || exitDraw;
+        unresolvedMoves.set(i, inTable + (neverLost ? 1 : 0));
+        if (shortestExitLoss >= 0) {
+            add(buckets, shortestExitLoss + 1, i, true);
+        } else if (count == 0) {
+            add(buckets, 0, i, false);
+        } else if (inTable == 0 && !neverLost) {
+            add(buckets, longestWin + 1, i, false);
+        }
+    }
+
+    /**
+     * Returns the entry for the position after a move, from an already
+     * solved table, or INVALID if the move stays inside the table being
+     * solved.
+     */
+    private int lookup(CheckersModel cm, int material) {
+        int bm = cm.getPieceCount(CheckersModel.BLACK);
+        int bk = cm.getPieceCount(CheckersModel.BLACK_KING);
+        int rm = cm.getPieceCount(CheckersModel.RED);
+        int rk = cm.getPieceCount(CheckersModel.RED_KING);
+        boolean blackToMove = cm.getCurrentPlayer();
+        if (blackToMove ? bm + bk == 0 : rm + rk == 0) {
+            // the player to move has nothing left
+            return Tablebase.entry(Tablebase.LOSS, 0);
+        }
+        int childMaterial = Tablebase.material(bm, bk, rm, rk);
+        if (childMaterial == material) {
+            return INVALID;
+        }
+        short[] table = solved.get(childMaterial);
+        if (table == null || cm.getIsJumpAgain()) {
+            throw new IllegalStateException("No solved table for " + Tablebase.fileName(childMaterial));
+        }
+        long index = Tablebase.index(cm.getBlackPieces(), cm.getRedPieces(), cm.getKingPieces(),
+                bm, bk, rm, rk, blackToMove);
+        return table[(int) index] & 0xFFFF;
+    }
+
+    /**
+     * Passes a newly solved position back to every position in the same
+     * table that reaches it with one simple move.
+     */
+    private void retract(int material, int i, int distance, AtomicIntegerArray status,
+                         AtomicIntegerArray unresolvedMoves, int[] longestExitWin,
+                         Map<Integer, Bucket> buckets) {
+        boolean lost = Tablebase.result(status.get(i)) == Tablebase.LOSS;
+        long[] position = unindex(material, i);
+        long black = position[0];
+        long red = position[1];
+        long kings = position[2];
+        boolean blackToMove = i < Tablebase.entriesPerSide(material);
+        // the player who just moved is the one not to move now
+        long movers = blackToMove ? red : black;
+        long empty = ~(black | red);
+
+        for (long pieces = movers; pieces != 0; pieces &= pieces - 1) {
+            long to = pieces & -pieces;
+            long froms;
+            if ((to & kings) != 0) {
+                froms = (to << 7 & NOT_COL_7) | (to << 9 & NOT_COL_0)
+                        | (to >>> 9 & NOT_COL_7) | (to >>> 7 & NOT_COL_0);
+            } else if (blackToMove) {
+                // red men move up the board
+                froms = (to << 7 & NOT_COL_7) | (to << 9 & NOT_COL_0);
+            } else {
+                froms = (to >>> 9 & NOT_COL_7) | (to >>> 7 & NOT_COL_0);
+            }
+            for (froms &= empty; froms != 0; froms &= froms - 1) {
+                long from = froms & -froms;
+                long b = blackToMove ? black : black ^ to ^ from;
+                long r = blackToMove ? red ^ to ^ from : red;
+                long k = (to & kings) != 0 ? kings ^ to ^ from : kings;
+                int parent = (int) Tablebase.index(b, r, k, material >>> 12,
+                        material >>> 8 & 15, material >>> 4 & 15, material & 15, !blackToMove);
+                if (status.get(parent) != UNKNOWN) {
+                    continue;
+                }
+                if (lost) {
+                    add(buckets, distance + 1, parent, true);
+                } else if (unresolvedMoves.decrementAndGet(parent) == 0) {
+                    add(buckets, Math.max(longestExitWin[parent], distance) + 1, parent, false);
+                }
+            }
+        }
+    }
+
+    // helper function to add a position to be solved at the given distance
+    private static void add(Map<Integer, Bucket> buckets, int distance, int i, boolean win) {
+        buckets.computeIfAbsent(distance, d -> new Bucket()).add(i << 1 | (win ? 1 : 0));
+    }
+
+    // helper function to turn a table index back into the black, red and king masks
+    private static long[] unindex(int material, long index) {
+        int bm = material >>> 12;
+        int bk = material >>> 8 & 15;
+        int rm = material >>> 4 & 15;
+        int rk = material & 15;
+        long perSide = Tablebase.entriesPerSide(material);
+        if (index >= perSide) {
+            index -= perSide;
+        }
+        long redKings = Tablebase.unrank(index % Tablebase.BINOMIAL[32][rk], rk);
+        index /= Tablebase.BINOMIAL[32][rk];
+        long redMen = Tablebase.unrank(index % Tablebase.BINOMIAL[32][rm], rm);
+        index /= Tablebase.BINOMIAL[32][rm];
+        long blackKings = Tablebase.unrank(index % Tablebase.BINOMIAL[32][bk], bk);
+        index /= Tablebase.BINOMIAL[32][bk];
+        long blackMen = Tablebase.unrank(index, bm);
+        return new long[] {blackMen | blackKings, redMen | redKings, blackKings | redKings};
+    }
+
+    // helper function to write a solved table in the format Tablebase reads
+    private static void write(Path file, int material, short[] table) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(Tablebase.MAGIC).putInt(material).putLong(table.length / 2);
+            out.write(header.array());
+            ByteBuffer entries = ByteBuffer.allocate(2 * table.length).order(ByteOrder.LITTLE_ENDIAN);
+            entries.asShortBuffer().put(table);
+            out.write(entries.array());
+        }
+    }
+
+    /**
+     * A list of positions waiting to be solved, filled from many threads.
+     */
+    private static class Bucket {
+        private int[] items = new int[16];
+        private int size;
+
+        synchronized void add(int item) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = item;
+        }
+
+        synchronized int[] toArray() {
+            return Arrays.copyOf(items, size);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java TablebaseGenerator PIECES [DIRECTORY]");
+            return;
+        }
+        int pieces = Integer.parseInt(args[0]);
+        Path directory = Paths.get(args.length > 1 ? args[1] : "tablebase");
+        long begin = System.nanoTime();
+        new TablebaseGenerator().generate(directory, pieces);
+        long elapsed = System.nanoTime() - begin;
+        System.out.println("Solved up to " + pieces + " pieces in " + elapsed / 1000000 + " ms");
+    }
+}
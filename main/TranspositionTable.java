@@ -0,0 +1,141 @@
+/**
+ * This class is a fixed-size hash table of search results, keyed by the
+ * Zobrist hash from CheckersModel.getHash.
+ *
+ * All memory is allocated up front as two long arrays, capped by the size
+ * given to the constructor. Each entry is one long of packed data plus one
+ * long holding the hash XOR the data, so a read that races with a write to
+ * the same slot fails the key check instead of returning a torn entry. This
+ * keeps the table safe to share between threads without any locking.
+ *
+ * Slots come in pairs. A new entry replaces the entry for the same position
+ * if there is one, and otherwise whichever of the pair is worth less: left
+ * over from an older search first, then searched to the smaller depth.
+ */
+public class TranspositionTable {
+
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    // data layout:
+    //   bits 0-31   move (packed as in CheckersModel.generateMoves)
+    //   bits 32-49  score + SCORE_OFFSET
+    //   bits 50-55  depth
+    //   bits 56-57  bound type
+    //   bits 58-62  age of the search that stored it
+    //   bit 63      set on every stored entry, so 0 always means a miss
+    private static final int SCORE_OFFSET = 1 << 17;
+    private static final int AGE_MASK = 31;
+    private static final long VALID = 1L << 63;
+
+    private static final int BYTES_PER_ENTRY = 16;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private int age;
+
+    /**
+     * Creates a table that uses at most sizeMegabytes of memory.
+     */
+    public TranspositionTable(int sizeMegabytes) {
+        if (sizeMegabytes < 1) {
+            throw new IllegalArgumentException("Transposition table needs at least 1 MB");
+        }
+        long maxEntries = (long) sizeMegabytes * 1024 * 1024 / BYTES_PER_ENTRY;
+        int entries = Integer.highestOneBit((int) Math.min(maxEntries, 1 << 30));
+        keys = new long[entries];
+        data = new long[entries];
+        mask = entries - 1;
+    }
+
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Marks the start of a new search, so entries from earlier searches are
+     * replaced first.
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    /**
+     * Empties the table.
+     */
+    public void clear() {
+        java.util.Arrays.fill(keys, 0L);
+        java.util.Arrays.fill(data, 0L);
+        age = 0;
+    }
+
+    /**
+     * Returns the packed entry stored for hash, or 0 if there is none. Use
+     * the static entry* methods to read it.
+     */
+    public long probe(long hash) {
+        int index = (int) hash & mask & ~1;
+        long entry = data[index];
+        if ((keys[index] ^ entry) == hash && entry != 0) {
+            return entry;
+        }
+        entry = data[index + 1];
+        if ((keys[index + 1] ^ entry) == hash && entry != 0) {
+            return entry;
+        }
+        return 0L;
+    }
+
+    public void store(long hash, int move, int score, int depth, int bound) {
+        int index = (int) hash & mask & ~1;
+
+        // reuse the slot already holding this position, otherwise replace the weaker slot
+        int slot;
+        if ((keys[index] ^ data[index]) == hash) {
+            slot = index;
+        } else if ((keys[index + 1] ^ data[index + 1]) == hash) {
+            slot = index + 1;
+        } else {
+            slot = replaceValue(data[index]) <= replaceValue(data[index + 1]) ? index : index + 1;
+        }
+
+        long entry = VALID | (move & 0xFFFFFFFFL)
+                | (long) (score + SCORE_OFFSET) << 32
+                | (long) Math.min(depth, 63) << 50
+                | (long) bound << 56
+                | (long) age << 58;
+        data[slot] = entry;
+        keys[slot] = hash ^ entry;
+    }
+
+    // how much an entry is worth keeping: entries from older searches lose 64 depth per search
+    private int replaceValue(long entry) {
+        if (entry == 0) {
+            return Integer.MIN_VALUE;
+        }
+        int staleness = (age - entryAge(entry)) & AGE_MASK;
+        return entryDepth(entry) - 64 * staleness;
+    }
+
+    public static int entryMove(long entry) {
+        return (int) entry;
+    }
+
+    public static int entryScore(long entry) {
+        return (int) ((entry >>> 32) & 0x3FFFF) - SCORE_OFFSET;
+    }
+
+    public static int entryDepth(long entry) {
+        return (int) (entry >>> 50) & 63;
+    }
+
+    public static int entryBound(long entry) {
+        return (int) (entry >>> 56) & 3;
+    }
+
+    private static int entryAge(long entry) {
+        return (int) (entry >>> 58) & AGE_MASK;
+    }
+}
@@ -0,0 +1,90 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkAnalyzerTest {
+
+    // helper function to write the line BulkAnalyzer should give for a position
+    private static String expectedLine(long number, CheckersModel cm, int depth) {
+        SearchResult result = new SearchEngine(depth, Long.MAX_VALUE).search(cm);
+        String move = result.getMove() == -1 ? "-" : Pdn.moveToString(result.getMove());
+        return number + "\t" + move + "\t" + result.getScore() + "\t" + result.getDepth();
+    }
+
+    @Test
+    public void testFenPositionsAnalyzedInOrder() throws IOException, InterruptedException {
+        // 20 positions from a game, plus one where red has no moves
+        List<String> fens = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        CheckersModel cm = new CheckersModel();
+        int[] moves = new int[CheckersModel.MAX_MOVES];
+        for (int ply = 0; ply < 20; ply++) {
+            fens.add(Pdn.fen(cm.getBlackPieces(), cm.getRedPieces(), cm.getKingPieces(),
+                    cm.getCurrentPlayer()));
+            expected.add(expectedLine(ply, cm, 3));
+            cm.makeMove(moves[ply % cm.generateMoves(moves)]);
+        }
+        fens.add("W:W:B1,2");
+        cm.setPosition(1L << Pdn.toSquare(1) | 1L << Pdn.toSquare(2), 0, 0, false, -1);
+        expected.add(expectedLine(20, cm, 3));
+
+        // small chunks and few of them, so chunks are reused and finish out of order
+        StringWriter out = new StringWriter();
+        BulkAnalyzer analyzer = new BulkAnalyzer(3, 3, 2, 3);
+        long count = analyzer.run(BulkAnalyzer.fenSource(
+                new BufferedReader(new StringReader(String.join("\n", fens) + "\n\n"))),
+                out, null, 1);
+
+        assertEquals(count, 21L);
+        assertEquals(out.toString(), String.join("\n", expected) + "\n");
+    }
+
+    @Test
+    public void testBadFenLineIsReportedAndSkipped() throws IOException, InterruptedException {
+        CheckersModel cm = new CheckersModel();
+        String fen = Pdn.fen(cm.getBlackPieces(), cm.getRedPieces(), cm.getKingPieces(),
+                cm.getCurrentPlayer());
+        StringWriter out = new StringWriter();
+        long count = new BulkAnalyzer(2, 2, 2, 2).run(BulkAnalyzer.fenSource(
+                new BufferedReader(new StringReader(fen + "\n\nnot a position\n" + fen))),
+                out, null, 1);
+
+        assertEquals(count, 3L);
+        assertEquals(out.toString(), expectedLine(0, cm, 2) + "\n"
+                + "1\terror\tline 3: Bad FEN: not a position\n" + expectedLine(2, cm, 2) + "\n");
+    }
+
+    @Test
+    public void testArchivePositions() throws IOException, InterruptedException {
+        Path path = Files.createTempFile("checkers", ".ckra");
+        List<String> expected = new ArrayList<>();
+        int[] moves = new int[CheckersModel.MAX_MOVES];
+        try (GameArchive.Writer writer = new GameArchive.Writer(path)) {
+            CheckersModel cm = new CheckersModel();
+            for (int ply = 0; ply < 12; ply++) {
+                writer.addPosition(cm);
+                expected.add(expectedLine(ply, cm, 2));
+                cm.generateMoves(moves);
+                cm.makeMove(moves[0]);
+            }
+            writer.endGame();
+        }
+
+        StringWriter out = new StringWriter();
+        try (BulkAnalyzer.PositionSource source =
+                     BulkAnalyzer.archiveSource(new GameArchive.Reader(path))) {
+            new BulkAnalyzer(2, 2, 5, 2).run(source, out, null, 1);
+        }
+        assertEquals(out.toString(), String.join("\n", expected) + "\n");
+        Files.delete(path);
+    }
+}
@@ -468,4 +468,400 @@ public class CheckersModelTest {
         }
 
     }
+
+    @Test
+    public void testGenerateMovesAtStart() {
+        CheckersModel cm = new CheckersModel();
+        int[] moves = new int[CheckersModel.MAX_MOVES];
+
+        // black opens with 7 possible simple moves
+        int count = cm.generateMoves(moves);
+        assertEquals(count, 7);
+        for (int i = 0; i < count; i++) {
+            assertEquals(CheckersModel.moveJumps(moves[i]), 0);
+            assertEquals(CheckersModel.moveFrom(moves[i]) / 8, 2);
+            assertEquals(CheckersModel.moveTo(moves[i]) / 8, 3);
+        }
+    }
+
+    @Test
+    public void testGenerateMovesListsWholeJumpSequence() {
+        CheckersModel cm = new CheckersModel();
+
+        int[][] board = {{0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 1, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 2, 0, 0, 0},
+                         {0, 1, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 2, 0, 2, 0, 0, 0},
+                         {0, 0, 1, 0, 0, 0, 1, 0},
+                         {0, 1, 0, 0, 2, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 3, 0, 0}};
+
+        int[][] expected = {{0, 0, 0, 0, 0, 0, 0, 0},
+                            {0, 1, 0, 3, 0, 0, 0, 0},
+                            {0, 0, 0, 0, 0, 0, 0, 0},
+                            {0, 1, 0, 0, 0, 0, 0, 0},
+                            {0, 0, 2, 0, 0, 0, 0, 0},
+                            {0, 0, 1, 0, 0, 0, 1, 0},
+                            {0, 1, 0, 0, 0, 0, 0, 0},
+                            {0, 0, 0, 0, 0, 0, 0, 0}};
+
+        cm.setBoard(board);
+        int[] moves = new int[CheckersModel.MAX_MOVES];
+        int count = cm.generateMoves(moves);
+
+        // the king's triple jump is listed as a single move
+        int tripleJump = -1;
+        for (int i = 0; i < count; i++) {
+            if (CheckersModel.moveJumps(moves[i]) == 3) {
+                tripleJump = moves[i];
+            }
+        }
+        assertEquals(CheckersModel.moveFrom(tripleJump), 7 * 8 + 5);
+        assertEquals(CheckersModel.moveTo(tripleJump), 1 * 8 + 3);
+
+        cm.makeMove(tripleJump);
+        assertFalse(cm.getCurrentPlayer());
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                assertEquals(cm.getPiece(row, col), expected[row][col]);
+            }
+        }
+
+        // unmaking the move restores the position
+        cm.unmakeMove(tripleJump);
+        assertTrue(cm.getCurrentPlayer());
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                assertEquals(cm.getPiece(row, col), board[row][col]);
+            }
+        }
+    }
+
+    @Test
+    public void testUndoInMiddleOfJumpKeepsJumpAgain() {
+        CheckersModel cm = new CheckersModel();
+
+        int[][] board = {{0, 1, 0, 0, 0, 0, 1, 0},
+                         {0, 0, 2, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 2, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0}};
+
+        cm.setBoard(board);
+        cm.moveOrJump(0, 1, 2, 3);
+        cm.moveOrJump(2, 3, 4, 1);
+        assertFalse(cm.getIsJumpAgain());
+
+        // undoing the second jump puts the piece back in the middle of its jump
+        cm.undo();
+        assertTrue(cm.getIsJumpAgain());
+        assertTrue(cm.getCurrentPlayer());
+        assertEquals(cm.getJumpAgainRow(), 2);
+        assertEquals(cm.getJumpAgainCol(), 3);
+        assertEquals(cm.getPiece(3, 2), 2);
+
+        // undoing the first jump goes back to the position from setBoard
+        cm.undo();
+        assertFalse(cm.getIsJumpAgain());
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                assertEquals(cm.getPiece(row, col), board[row][col]);
+            }
+        }
+    }
+
+    @Test
+    public void testHashSameForTransposedMoveOrders() {
+        CheckersModel first = new CheckersModel();
+        first.moveOrJump(2, 1, 3, 0);
+        first.moveOrJump(5, 0, 4, 1);
+        first.moveOrJump(2, 3, 3, 4);
+        first.moveOrJump(5, 2, 4, 3);
+
+        CheckersModel second = new CheckersModel();
+        second.moveOrJump(2, 3, 3, 4);
+        second.moveOrJump(5, 2, 4, 3);
+        second.moveOrJump(2, 1, 3, 0);
+        second.moveOrJump(5, 0, 4, 1);
+
+        assertEquals(first.getHash(), second.getHash());
+
+        // the same pieces with the other player to move hash differently
+        first.moveOrJump(1, 0, 2, 1);
+        assertNotEquals(first.getHash(), second.getHash());
+    }
+
+    @Test
+    public void testHashMatchesSetBoardAfterJumpAndPromotion() {
+        CheckersModel cm = new CheckersModel();
+
+        int[][] board = {{0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 1, 0, 0, 0, 0},
+                         {2, 0, 0, 0, 2, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0}};
+
+        int[][] expected = {{0, 0, 0, 0, 0, 0, 0, 0},
+                            {0, 0, 0, 0, 0, 0, 0, 0},
+                            {0, 0, 0, 0, 0, 0, 0, 0},
+                            {0, 0, 0, 0, 0, 0, 0, 0},
+                            {0, 0, 0, 0, 0, 0, 0, 0},
+                            {0, 2, 0, 0, 0, 0, 0, 0},
+                            {0, 0, 0, 0, 0, 0, 0, 0},
+                            {0, 0, 0, 0, 0, 3, 0, 0}};
+
+        cm.setBoard(board);
+        long before = cm.getHash();
+        cm.moveOrJump(5, 3, 7, 5);
+        cm.moveOrJump(6, 0, 5, 1);
+        assertTrue(cm.getCurrentPlayer());
+
+        // the incrementally updated hash matches hashing the same position from scratch
+        CheckersModel other = new CheckersModel();
+        other.setBoard(expected);
+        assertEquals(cm.getHash(), other.getHash());
+
+        // undo brings back the original hash
+        cm.undo();
+        cm.undo();
+        assertEquals(cm.getHash(), before);
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        CheckersModel cm = new CheckersModel();
+        cm.moveOrJump(2, 1, 3, 2);
+
+        CheckersModel copy = new CheckersModel(cm);
+        assertEquals(copy.getHash(), cm.getHash());
+        assertFalse(copy.getCurrentPlayer());
+
+        copy.moveOrJump(5, 0, 4, 1);
+        assertEquals(copy.getPiece(4, 1), CheckersModel.RED);
+        assertEquals(cm.getPiece(4, 1), CheckersModel.EMPTY);
+        assertFalse(cm.getCurrentPlayer());
+
+        // the copy's undo history starts where it was copied
+        copy.undo();
+        copy.undo();
+        assertEquals(copy.getHash(), cm.getHash());
+        assertEquals(copy.getPiece(3, 2), CheckersModel.BLACK);
+        assertEquals(copy.getHistoryStart(), cm.getPosition());
+        assertEquals(cm.getHistoryStart(), new CheckersModel().getPosition());
+    }
+
+    @Test
+    public void testPieceCountsFollowCapturesAndPromotion() {
+        CheckersModel cm = new CheckersModel();
+        assertEquals(cm.getPieceCount(CheckersModel.BLACK), 12);
+        assertEquals(cm.getPieceCount(CheckersModel.RED), 12);
+
+        int[][] board = {{0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 1, 0, 0, 0, 0},
+                         {2, 0, 0, 0, 2, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0}};
+
+        cm.setBoard(board);
+        assertEquals(cm.getPieceCount(CheckersModel.BLACK), 1);
+        assertEquals(cm.getPieceCount(CheckersModel.RED), 2);
+
+        // jumping onto the last row captures a red piece and promotes
+        cm.moveOrJump(5, 3, 7, 5);
+        assertEquals(cm.getPieceCount(CheckersModel.BLACK), 0);
+        assertEquals(cm.getPieceCount(CheckersModel.BLACK_KING), 1);
+        assertEquals(cm.getPieceCount(CheckersModel.RED), 1);
+        assertEquals(cm.checkWinner(), 0);
+
+        cm.undo();
+        assertEquals(cm.getPieceCount(CheckersModel.BLACK), 1);
+        assertEquals(cm.getPieceCount(CheckersModel.BLACK_KING), 0);
+        assertEquals(cm.getPieceCount(CheckersModel.RED), 2);
+        assertTrue(cm.anyLegalMoves(true));
+    }
+
+    @Test
+    public void testUndoWinningMove() {
+        CheckersModel cm = new CheckersModel();
+
+        int[][] board = {{0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 1, 0, 0, 0},
+                         {0, 0, 0, 2, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0}};
+
+        cm.setBoard(board);
+        cm.moveOrJump(5, 4, 7, 2);
+        assertTrue(cm.getIsGameOver());
+        assertEquals(cm.checkWinner(), 1);
+
+        // undo takes back the capture, the promotion and the end of the game
+        cm.undo();
+        assertFalse(cm.getIsGameOver());
+        assertTrue(cm.getCurrentPlayer());
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                assertEquals(cm.getPiece(row, col), board[row][col]);
+            }
+        }
+
+        // nothing left to undo
+        cm.undo();
+        assertEquals(cm.getPiece(5, 4), CheckersModel.BLACK);
+    }
+
+    @Test
+    public void testMoveHistoryJoinsJumpSteps() {
+        CheckersModel cm = new CheckersModel();
+
+        int[][] board = {{0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 1, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 2, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 2, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0}};
+
+        cm.setBoard(board);
+        // a double jump step by step, then a red move
+        cm.moveOrJump(3, 1, 5, 3);
+        cm.moveOrJump(5, 3, 7, 1);
+        assertFalse(cm.getCurrentPlayer());
+
+        int[] history = cm.getMoveHistory();
+        assertEquals(history.length, 1);
+        assertEquals(CheckersModel.moveJumps(history[0]), 2);
+        assertEquals(CheckersModel.moveFrom(history[0]), 3 * 8 + 1);
+        assertEquals(CheckersModel.moveTo(history[0]), 7 * 8 + 1);
+
+        // taking the whole move back returns to the board that was set
+        cm.unmakeMove(history[0]);
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                assertEquals(cm.getPiece(row, col), board[row][col]);
+            }
+        }
+        assertEquals(cm.getMoveHistory().length, 0);
+    }
+
+    @Test
+    public void testEvaluationFollowsMovesAndUndo() {
+        CheckersModel cm = new CheckersModel();
+        assertEquals(cm.evaluate(), 0);
+
+        // random games with some moves taken back, including jumps and promotions
+        java.util.SplittableRandom random = new java.util.SplittableRandom(3);
+        int[] moves = new int[CheckersModel.MAX_MOVES];
+        for (int game = 0; game < 20; game++) {
+            cm.reset();
+            for (int ply = 0; ply < 150 && cm.checkWinner() == 0; ply++) {
+                int move = moves[random.nextInt(cm.generateMoves(moves))];
+                cm.makeMove(move);
+                assertEquals(cm.evaluate(), cm.evaluateFromScratch());
+                if (random.nextInt(4) == 0) {
+                    cm.unmakeMove(move);
+                    assertEquals(cm.evaluate(), cm.evaluateFromScratch());
+                }
+            }
+        }
+
+        // changing the weights rescores the same position
+        cm.setEvaluator(new Evaluator(1, 0, 0, 0, 0));
+        int men = cm.getPieceCount(CheckersModel.BLACK) - cm.getPieceCount(CheckersModel.RED);
+        assertEquals(cm.evaluate(), cm.getCurrentPlayer() ? men : -men);
+    }
+
+    @Test
+    public void testPublishedPositionFollowsModel() {
+        CheckersModel cm = new CheckersModel();
+        Position start = cm.getPosition();
+        assertEquals(start.getHash(), cm.getHash());
+        assertEquals(start.getPiece(2, 1), CheckersModel.BLACK);
+
+        cm.moveOrJump(2, 1, 3, 2);
+        Position moved = cm.getPosition();
+        assertEquals(moved.getHash(), cm.getHash());
+        assertFalse(moved.getCurrentPlayer());
+        assertEquals(moved.getPiece(3, 2), CheckersModel.BLACK);
+        // the earlier snapshot is unchanged
+        assertEquals(start.getPiece(3, 2), CheckersModel.EMPTY);
+
+        // a search plays many moves, but readers only ever see the position it started from
+        new SearchEngine(4, 100000).search(cm);
+        assertSame(cm.getPosition(), moved);
+        cm.setPublishing(true);
+        assertEquals(cm.getPosition(), moved);
+
+        cm.undo();
+        assertEquals(cm.getPosition(), start);
+        assertEquals(new CheckersModel(moved).getHash(), moved.getHash());
+    }
+
+    @Test
+    public void testThreefoldRepetitionIsDraw() {
+        CheckersModel cm = new CheckersModel();
+        cm.setPosition(1L << 3 * 8 + 2, 1L << 5 * 8 + 6, 1L << 3 * 8 + 2 | 1L << 5 * 8 + 6,
+                true, -1);
+
+        // both kings step away and back twice: the start position comes up a third time
+        for (int round = 0; round < 2; round++) {
+            assertEquals(cm.checkWinner(), 0);
+            cm.moveOrJump(3, 2, 2, 3);
+            cm.moveOrJump(5, 6, 4, 7);
+            cm.moveOrJump(2, 3, 3, 2);
+            cm.moveOrJump(4, 7, 5, 6);
+        }
+        assertTrue(cm.isDraw());
+        assertEquals(cm.checkWinner(), CheckersModel.DRAW);
+
+        // taking a move back undoes the draw
+        cm.undo();
+        assertFalse(cm.isDraw());
+        assertEquals(cm.checkWinner(), 0);
+
+        // a copy (as a search makes) keeps the count, so the last move draws there too
+        CheckersModel copy = new CheckersModel(cm);
+        assertFalse(copy.isDraw());
+        copy.moveOrJump(4, 7, 5, 6);
+        assertTrue(copy.isDraw());
+        assertFalse(cm.isDraw());
+    }
+
+    @Test
+    public void testQuietMovesRuleIsDraw() {
+        CheckersModel cm = new CheckersModel();
+        cm.setDrawMoves(3);
+        cm.setPosition(1L << 3 * 8 + 2 | 1L << 1, 1L << 5 * 8 + 6,
+                1L << 3 * 8 + 2 | 1L << 5 * 8 + 6, true, -1);
+
+        cm.moveOrJump(3, 2, 2, 3);
+        cm.moveOrJump(5, 6, 4, 7);
+        // a man moving starts the count again
+        cm.moveOrJump(0, 1, 1, 2);
+        cm.moveOrJump(4, 7, 3, 6);
+        cm.moveOrJump(2, 3, 3, 4);
+        assertEquals(cm.checkWinner(), 0);
+        cm.moveOrJump(3, 6, 2, 7);
+        assertEquals(cm.checkWinner(), CheckersModel.DRAW);
+
+        cm.undo();
+        assertEquals(cm.checkWinner(), 0);
+        cm.setDrawMoves(0);
+        cm.moveOrJump(3, 6, 2, 7);
+        assertEquals(cm.checkWinner(), 0);
+    }
 }
@@ -0,0 +1,81 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComputerPlayerTest {
+
+    @Test
+    public void testThinkFindsSameMoveAsEngine() throws InterruptedException {
+        CheckersModel cm = new CheckersModel();
+        cm.moveOrJump(2, 1, 3, 2);
+
+        ComputerPlayer computer = new ComputerPlayer(5, 1000000, Runnable::run);
+        List<Integer> depths = new ArrayList<>();
+        SearchResult[] found = new SearchResult[1];
+        CountDownLatch done = new CountDownLatch(1);
+        computer.think(cm, new ComputerPlayer.Listener() {
+            @Override
+            public void progress(SearchResult result) {
+                depths.add(result.getDepth());
+            }
+
+            @Override
+            public void moveFound(SearchResult result) {
+                found[0] = result;
+                done.countDown();
+            }
+        });
+        // the search runs on a copy, so the model can change meanwhile
+        cm.moveOrJump(5, 2, 4, 3);
+        cm.undo();
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        computer.shutdown();
+
+        SearchResult expected = new SearchEngine(5, 1000000).search(cm);
+        assertEquals(found[0].getMove(), expected.getMove());
+        assertEquals(found[0].getDepth(), 5);
+        assertEquals(depths.size(), 5);
+        assertEquals((int) depths.get(4), 5);
+    }
+
+    @Test
+    public void testCancelledSearchReportsNothing() throws InterruptedException {
+        CheckersModel cm = new CheckersModel();
+        ComputerPlayer computer = new ComputerPlayer(40, 200000, Runnable::run);
+        AtomicInteger calls = new AtomicInteger();
+        computer.think(cm, new ComputerPlayer.Listener() {
+            @Override
+            public void progress(SearchResult result) {
+            }
+
+            @Override
+            public void moveFound(SearchResult result) {
+                calls.incrementAndGet();
+            }
+        });
+        computer.cancel();
+
+        // the next search starts as soon as the cancelled one has stopped
+        CountDownLatch done = new CountDownLatch(1);
+        computer.think(cm, new ComputerPlayer.Listener() {
+            @Override
+            public void progress(SearchResult result) {
+            }
+
+            @Override
+            public void moveFound(SearchResult result) {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        computer.shutdown();
+        assertEquals(calls.get(), 0);
+    }
+}
@@ -0,0 +1,141 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DraughtsModelTest {
+
+    @Test
+    public void testGeometry() {
+        BoardGeometry ten = BoardGeometry.TEN;
+        assertEquals(Long.bitCount(ten.getSquares()), 50);
+        assertEquals(Long.bitCount(BoardGeometry.EIGHT.getSquares()), 32);
+        assertEquals(ten.bit(0, 0), -1);
+        assertEquals(ten.row(ten.bit(9, 8)), 9);
+        assertEquals(ten.col(ten.bit(9, 8)), 8);
+
+        // every square's neighbours are the squares diagonally next to it
+        for (int row = 0; row < 10; row++) {
+            for (int col = 0; col < 10; col++) {
+                int square = ten.bit(row, col);
+                if (square >= 0) {
+                    assertEquals(ten.next(square, BoardGeometry.DOWN_LEFT),
+                            ten.bit(row + 1, col - 1));
+                    assertEquals(ten.next(square, BoardGeometry.UP_RIGHT),
+                            ten.bit(row - 1, col + 1));
+                }
+            }
+        }
+        assertEquals(ten.expand(ten.compress(ten.getSquares())), ten.getSquares());
+        assertEquals(ten.compress(ten.getSquares()), (1L << 50) - 1);
+    }
+
+    // with ENGLISH rules the model must play exactly the moves CheckersModel does
+    @Test
+    public void testEnglishMatchesCheckersModel() {
+        SplittableRandom random = new SplittableRandom(7);
+        DraughtsModel dm = new DraughtsModel(Rules.ENGLISH);
+        int[] moves = new int[CheckersModel.MAX_MOVES];
+        for (int game = 0; game < 10; game++) {
+            CheckersModel cm = new CheckersModel();
+            for (int ply = 0; ply < 80; ply++) {
+                setFrom(dm, cm);
+                assertEquals(Perft.perft(dm, 3), Perft.perft(cm, 3));
+                int count = cm.generateMoves(moves);
+                if (count == 0) {
+                    break;
+                }
+                cm.makeMove(moves[random.nextInt(count)]);
+            }
+        }
+    }
+
+    // the published perft numbers for 10x10 international draughts
+    @Test
+    public void testInternationalPerftFromStart() {
+        DraughtsModel dm = new DraughtsModel(Rules.INTERNATIONAL);
+        assertEquals(Perft.perft(dm, 1), 9L);
+        assertEquals(Perft.perft(dm, 2), 81L);
+        assertEquals(Perft.perft(dm, 3), 658L);
+        assertEquals(Perft.perft(dm, 4), 4265L);
+        assertEquals(Perft.perft(dm, 5), 27117L);
+    }
+
+    @Test
+    public void testMajorityCaptureAndFlyingKing() {
+        DraughtsModel dm = new DraughtsModel(Rules.INTERNATIONAL);
+        BoardGeometry ten = dm.getGeometry();
+        long[] moves = new long[DraughtsModel.MAX_MOVES];
+
+        // the man at 0,1 can take one piece; the king at 9,0 flies up the long
+        // diagonal and takes two, landing on 1,8 or 0,9, so only those are legal
+        long black = 1L << ten.bit(0, 1) | 1L << ten.bit(9, 0);
+        long red = 1L << ten.bit(1, 2) | 1L << ten.bit(5, 4) | 1L << ten.bit(2, 7);
+        dm.setPosition(black, red, 1L << ten.bit(9, 0), true);
+        assertEquals(dm.generateMoves(moves), 2);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(DraughtsModel.getFrom(moves[i]), ten.bit(9, 0));
+            assertEquals(dm.getCaptured(moves[i]), 1L << ten.bit(5, 4) | 1L << ten.bit(2, 7));
+        }
+
+        long hash = dm.getHash();
+        dm.makeMove(moves[0]);
+        int to = DraughtsModel.getTo(moves[0]);
+        assertEquals(dm.getPiece(ten.row(to), ten.col(to)), CheckersModel.BLACK_KING);
+        assertEquals(dm.getRedPieces(), 1L << ten.bit(1, 2));
+        assertFalse(dm.getCurrentPlayer());
+        dm.unmakeMove();
+        assertEquals(dm.getHash(), hash);
+        assertEquals(dm.getRedPieces(), red);
+        assertEquals(dm.getKingPieces(), 1L << ten.bit(9, 0));
+    }
+
+    @Test
+    public void testNoMovesLoses() {
+        DraughtsModel dm = new DraughtsModel(Rules.INTERNATIONAL);
+        BoardGeometry ten = dm.getGeometry();
+        dm.setPosition(1L << ten.bit(0, 1), 1L << ten.bit(9, 0), 0, false);
+        assertEquals(dm.checkWinner(), 0);
+
+        // black's only man is blocked and cannot capture, so red wins
+        long red = 1L << ten.bit(1, 0) | 1L << ten.bit(1, 2) | 1L << ten.bit(2, 3);
+        dm.setPosition(1L << ten.bit(0, 1), red, 0, true);
+        assertEquals(dm.checkWinner(), 2);
+
+        // losing for want of a move comes before any draw rule, as in CheckersModel
+        dm.setDrawMoves(0);
+        assertEquals(dm.checkWinner(), 2);
+        dm.setPosition(1L << ten.bit(0, 1), 1L << ten.bit(9, 0) | 1L << ten.bit(1, 2)
+                | 1L << ten.bit(1, 0) | 1L << ten.bit(2, 3), 1L << ten.bit(9, 0), false);
+        dm.setDrawMoves(1);
+        // the last move listed is one of the red king's
+        long[] moves = new long[DraughtsModel.MAX_MOVES];
+        dm.makeMove(moves[dm.generateMoves(moves) - 1]);
+        assertTrue(dm.isDraw());
+        assertEquals(dm.checkWinner(), 2);
+    }
+
+    // helper function to copy a CheckersModel position into a DraughtsModel
+    private static void setFrom(DraughtsModel dm, CheckersModel cm) {
+        BoardGeometry geometry = dm.getGeometry();
+        long black = 0;
+        long red = 0;
+        long kings = 0;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                int piece = cm.getPiece(row, col);
+                long square = piece == CheckersModel.EMPTY ? 0 : 1L << geometry.bit(row, col);
+                if (piece == CheckersModel.BLACK || piece == CheckersModel.BLACK_KING) {
+                    black |= square;
+                } else {
+                    red |= square;
+                }
+                if (piece == CheckersModel.BLACK_KING || piece == CheckersModel.RED_KING) {
+                    kings |= square;
+                }
+            }
+        }
+        dm.setPosition(black, red, kings, cm.getCurrentPlayer());
+    }
+}
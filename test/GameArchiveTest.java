@@ -0,0 +1,123 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameArchiveTest {
+
+    @Test
+    public void testWriteAndReadGames() throws IOException {
+        Path path = Files.createTempFile("checkers", ".ckra");
+        int[] moves = new int[CheckersModel.MAX_MOVES];
+        long[][] hashes = new long[3][];
+
+        // three games of 4, 7 and 10 moves, always playing the first legal move
+        try (GameArchive.Writer writer = new GameArchive.Writer(path)) {
+            for (int game = 0; game < 3; game++) {
+                CheckersModel cm = new CheckersModel();
+                hashes[game] = new long[4 + 3 * game];
+                for (int ply = 0; ply < hashes[game].length; ply++) {
+                    hashes[game][ply] = cm.getHash();
+                    writer.addPosition(cm);
+                    cm.makeMove(moves[cm.generateMoves(moves) - 1]);
+                }
+                writer.endGame();
+            }
+        }
+
+        try (GameArchive.Reader reader = new GameArchive.Reader(path)) {
+            assertEquals(reader.getGameCount(), 3);
+            assertEquals(reader.getPositionCount(), 21L);
+            CheckersModel cm = new CheckersModel();
+            for (int game = 0; game < 3; game++) {
+                assertEquals(reader.getGameLength(game), hashes[game].length);
+                for (int ply = 0; ply < hashes[game].length; ply++) {
+                    reader.loadPosition(game, ply, cm);
+                    assertEquals(cm.getHash(), hashes[game][ply]);
+                    assertEquals(cm.getCurrentPlayer(), ply % 2 == 0);
+                }
+            }
+            reader.loadGame(2, cm);
+            assertEquals(cm.getHash(), hashes[2][9]);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testJumpInProgressIsKept() throws IOException {
+        Path path = Files.createTempFile("checkers", ".ckra");
+        CheckersModel cm = new CheckersModel();
+
+        int[][] board = {{0, 1, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 2, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 2, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0}};
+
+        cm.setBoard(board);
+        cm.moveOrJump(0, 1, 2, 3);
+        try (GameArchive.Writer writer = new GameArchive.Writer(path)) {
+            writer.addPosition(cm);
+        }
+
+        try (GameArchive.Reader reader = new GameArchive.Reader(path)) {
+            CheckersModel loaded = new CheckersModel();
+            reader.loadGame(0, loaded);
+            assertTrue(loaded.getIsJumpAgain());
+            assertEquals(loaded.getJumpAgainRow(), 2);
+            assertEquals(loaded.getJumpAgainCol(), 3);
+            assertEquals(loaded.getHash(), cm.getHash());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testRejectsNegativeCounts() throws IOException {
+        Path path = Files.createTempFile("checkers", ".ckra");
+        try (GameArchive.Writer writer = new GameArchive.Writer(path)) {
+            writer.addPosition(new CheckersModel());
+            writer.endGame();
+        }
+        // a game count of -2 in the header
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[8] = (byte) 0xFE;
+        bytes[9] = (byte) 0xFF;
+        bytes[10] = (byte) 0xFF;
+        bytes[11] = (byte) 0xFF;
+        Files.write(path, bytes);
+
+        String message = null;
+        try (GameArchive.Reader reader = new GameArchive.Reader(path)) {
+            reader.getGameCount();
+        } catch (IOException e) {
+            message = e.getMessage();
+        } finally {
+            Files.delete(path);
+        }
+        assertNotNull(message);
+        assertTrue(message.startsWith("Game archive is corrupt"));
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        Path path = Files.createTempFile("checkers", ".txt");
+        Files.write(path, "1\n0 1 0 1 0 1 0 1 \n".getBytes());
+        boolean rejected = false;
+        try (GameArchive.Reader reader = new GameArchive.Reader(path)) {
+            reader.getGameCount();
+        } catch (IOException e) {
+            rejected = true;
+        } finally {
+            Files.delete(path);
+        }
+        assertTrue(rejected);
+    }
+}
@@ -0,0 +1,143 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameServerTest {
+
+    @Test
+    public void testCommands() throws IOException {
+        try (GameServer server = new GameServer(0, 1)) {
+            assertEquals(server.handle("NEW"), "GAME 1");
+            assertEquals(server.handle("BOARD 1"), "BOARD 1 black "
+                    + "01010101" + "10101010" + "01010101" + "00000000"
+                    + "00000000" + "20202020" + "02020202" + "20202020");
+            assertTrue(server.handle("MOVES 1").startsWith("MOVES 1 2,1-3,0 2,3-3,2 "));
+            assertEquals(server.handle("MOVE 1 2,1-3,2"), "MOVED 1 0");
+            assertEquals(server.handle("MOVE 1 2,3-3,4"), "ERR illegal move 2,3-3,4");
+            assertTrue(server.handle("BOARD 1").startsWith("BOARD 1 red "));
+            assertEquals(server.handle("UNDO 1"), "UNDONE 1");
+            assertTrue(server.handle("BOARD 1").startsWith("BOARD 1 black "));
+            assertEquals(server.handle("END 1"), "ENDED 1");
+            assertEquals(server.handle("BOARD 1"), "ERR no game 1");
+            assertEquals(server.handle("JUMP 2"), "ERR no game 2");
+            assertEquals(server.getSessionCount(), 0);
+        }
+    }
+
+    @Test
+    public void testClientsPlayOverSockets() throws Exception {
+        try (GameServer server = new GameServer(0, 2)) {
+            Thread[] clients = new Thread[4];
+            String[] failures = new String[clients.length];
+            for (int i = 0; i < clients.length; i++) {
+                int client = i;
+                clients[i] = new Thread(() -> {
+                    try {
+                        failures[client] = playFirstMoves(server.getPort(), 20);
+                    } catch (IOException e) {
+                        failures[client] = e.toString();
+                    }
+                });
+                clients[i].start();
+            }
+            for (int i = 0; i < clients.length; i++) {
+                clients[i].join();
+                assertNull(failures[i]);
+            }
+            // each client's game went when its connection closed
+            assertEquals(server.getSessionCount(), 0);
+        }
+    }
+
+    @Test
+    public void testOnlyTheOwnerPlaysAGame() throws IOException {
+        try (GameServer server = new GameServer(0, 1);
+             Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            assertEquals(server.handle("NEW"), "GAME 1");
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            out.println("MOVE 1 2,1-3,2");
+            assertEquals(in.readLine(), "ERR not your game 1");
+            out.println("END 1");
+            assertEquals(in.readLine(), "ERR not your game 1");
+            out.println("BOARD 1");
+            assertTrue(in.readLine().startsWith("BOARD 1 black "));
+            assertEquals(server.handle("END 1"), "ENDED 1");
+        }
+    }
+
+    // a client that resets its connection while replies are waiting only loses that connection
+    @Test
+    public void testResetClientLeavesServerRunning() throws IOException {
+        try (GameServer server = new GameServer(0, 2)) {
+            for (int attempt = 0; attempt < 3; attempt++) {
+                try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+                    PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                    out.println("NEW");
+                    for (int i = 0; i < 200; i++) {
+                        out.println("BOARD " + (attempt + 1));
+                    }
+                    socket.setSoLinger(true, 0);
+                }
+            }
+            try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+                socket.setSoTimeout(5000);
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        socket.getInputStream(), StandardCharsets.US_ASCII));
+                out.println("NEW");
+                assertTrue(in.readLine().startsWith("GAME "));
+            }
+        }
+    }
+
+    @Test
+    public void testLongLineClosesConnection() throws IOException {
+        try (GameServer server = new GameServer(0, 1);
+             Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            out.print("NEW\n");
+            out.println("MOVES " + "1".repeat(GameServer.MAX_LINE));
+            assertEquals(in.readLine(), "GAME 1");
+            assertEquals(in.readLine(), "ERR line too long");
+            assertNull(in.readLine());
+            assertEquals(server.getSessionCount(), 0);
+        }
+    }
+
+    // starts a game and plays the first legal move until it ends; returns null if all went well
+    private static String playFirstMoves(int port, int moves) throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            out.println("NEW");
+            String id = in.readLine().split(" ")[1];
+            for (int i = 0; i < moves; i++) {
+                out.println("MOVES " + id);
+                String[] legal = in.readLine().split(" ");
+                if (legal.length < 3) {
+                    break;
+                }
+                out.println("MOVE " + id + " " + legal[2]);
+                String reply = in.readLine();
+                if (!reply.startsWith("MOVED " + id + " ")) {
+                    return reply;
+                }
+            }
+            out.println("QUIT");
+            String bye = in.readLine();
+            return bye.equals("BYE") && in.readLine() == null ? null : bye;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveJournalTest {
+
+    @Test
+    public void testReplayRebuildsPositionAndUndoHistory() throws IOException {
+        Path path = Files.createTempFile("checkers", ".journal");
+        try {
+            CheckersModel cm = new CheckersModel();
+            MoveJournal journal = MoveJournal.open(path, cm, 4, 10);
+            assertSame(cm.getJournal(), journal);
+
+            cm.moveOrJump(2, 1, 3, 2);
+            cm.moveOrJump(5, 4, 4, 3);
+            cm.undo();
+            cm.moveOrJump(5, 2, 4, 3);
+            int records = 4;
+            int[] moves = new int[CheckersModel.MAX_MOVES];
+            for (int i = 0; i < 6; i++) {
+                cm.generateMoves(moves);
+                cm.makeMove(moves[0]);
+                records += CheckersModel.moveSteps(moves[0]);
+            }
+            cm.unmakeMove(moves[0]);
+            records += CheckersModel.moveSteps(moves[0]);
+            journal.flush();
+            journal.close();
+
+            CheckersModel replayed = new CheckersModel();
+            assertEquals(MoveJournal.replay(path, replayed), records);
+            assertEquals(replayed.getPosition(), cm.getPosition());
+            assertArrayEquals(replayed.getMoveHistory(), cm.getMoveHistory());
+
+            // the undo history is rebuilt too, right back to the start
+            while (cm.getMoveHistory().length > 0) {
+                cm.undo();
+                replayed.undo();
+                assertEquals(replayed.getPosition(), cm.getPosition());
+            }
+            assertEquals(replayed.getPosition(), new CheckersModel().getPosition());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testDamagedTailIsDropped() throws IOException {
+        Path path = Files.createTempFile("checkers", ".journal");
+        try {
+            CheckersModel cm = new CheckersModel();
+            MoveJournal journal = MoveJournal.open(path, cm);
+            cm.moveOrJump(2, 1, 3, 2);
+            cm.moveOrJump(5, 4, 4, 3);
+            journal.close();
+            long length = MoveJournal.HEADER_BYTES + 2 * MoveJournal.RECORD_BYTES;
+            assertEquals(Files.size(path), length);
+
+            // a record cut off by a crash, after one with a bad check byte
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.APPEND)) {
+                channel.write(ByteBuffer.wrap(new byte[] {1, 17, 26, 0, 1, 17}));
+            }
+
+            CheckersModel reopened = new CheckersModel();
+            journal = MoveJournal.open(path, reopened);
+            assertEquals(reopened.getPosition(), cm.getPosition());
+            assertEquals(Files.size(path), length);
+
+            // and it carries on from there
+            reopened.moveOrJump(2, 3, 3, 4);
+            journal.close();
+            assertEquals(Files.size(path), length + MoveJournal.RECORD_BYTES);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testResetStartsTheJournalAgain() throws IOException {
+        Path path = Files.createTempFile("checkers", ".journal");
+        try {
+            CheckersModel cm = new CheckersModel();
+            MoveJournal journal = MoveJournal.open(path, cm);
+            cm.moveOrJump(2, 1, 3, 2);
+            journal.flush();
+            assertEquals(Files.size(path), (long) MoveJournal.HEADER_BYTES
+                    + MoveJournal.RECORD_BYTES);
+
+            cm.reset();
+            cm.moveOrJump(2, 3, 3, 4);
+            cm.moveOrJump(5, 2, 4, 1);
+            journal.close();
+
+            CheckersModel replayed = new CheckersModel();
+            assertEquals(MoveJournal.replay(path, replayed), 2);
+            assertEquals(replayed.getPosition(), cm.getPosition());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpeningBookTest {
+
+    // plays the given choices (indexes into the legal move list) from a new game
+    private static int[] playGame(int... choices) {
+        CheckersModel cm = new CheckersModel();
+        int[] moves = new int[CheckersModel.MAX_MOVES];
+        int[] played = new int[choices.length];
+        for (int i = 0; i < choices.length; i++) {
+            cm.generateMoves(moves);
+            played[i] = moves[choices[i]];
+            cm.makeMove(played[i]);
+        }
+        return played;
+    }
+
+    @Test
+    public void testMostPlayedMoveIsLookedUp() throws IOException {
+        OpeningBook.Builder builder = new OpeningBook.Builder(2);
+        int[] first = playGame(0, 0, 0);
+        int[] second = playGame(3, 1);
+        builder.addGame(first, 1);
+        builder.addGame(first, 2);
+        builder.addGame(second, 1);
+        assertEquals(builder.getPositionCount(), 3);
+
+        Path path = Files.createTempFile("checkers", ".book");
+        // the second game's moves were only played once
+        assertEquals(builder.write(path, 2), 2);
+
+        try (OpeningBook book = new OpeningBook(path)) {
+            CheckersModel cm = new CheckersModel();
+            assertEquals(book.lookup(cm), first[0]);
+            assertEquals(book.getPlayed(cm, first[0]), 2);
+            assertEquals(book.getPlayed(cm, second[0]), 0);
+            cm.makeMove(first[0]);
+            assertEquals(book.lookup(cm), first[1]);
+            // only the first two plies were counted
+            cm.makeMove(first[1]);
+            assertEquals(book.lookup(cm), -1);
+        }
+    }
+
+    @Test
+    public void testEngineAnswersFromBook() throws IOException {
+        OpeningBook.Builder builder = new OpeningBook.Builder(10);
+        int[] game = playGame(6, 6, 6, 6);
+        builder.addGame(game, 0);
+        Path path = Files.createTempFile("checkers", ".book");
+        builder.write(path, 1);
+
+        try (OpeningBook book = new OpeningBook(path)) {
+            SearchEngine engine = new SearchEngine(6, Long.MAX_VALUE, new TranspositionTable(1));
+            engine.setOpeningBook(book);
+            CheckersModel cm = new CheckersModel();
+            SearchResult result = engine.search(cm);
+            assertEquals(result.getMove(), game[0]);
+            assertEquals(result.getNodes(), 0L);
+
+            // out of the book the engine searches as usual
+            cm.makeMove(game[0]);
+            cm.makeMove(game[1]);
+            cm.makeMove(game[2]);
+            cm.makeMove(game[3]);
+            assertTrue(engine.search(cm).getDepth() > 0);
+        }
+    }
+
+    @Test
+    public void testArchiveGivesSameBookAsMoves() throws IOException {
+        int[] game = playGame(1, 2, 0, 4, 1);
+        Path archive = Files.createTempFile("checkers", ".ckra");
+        try (GameArchive.Writer writer = new GameArchive.Writer(archive)) {
+            CheckersModel cm = new CheckersModel();
+            writer.addPosition(cm);
+            for (int move : game) {
+                cm.makeMove(move);
+                writer.addPosition(cm);
+            }
+        }
+
+        OpeningBook.Builder builder = new OpeningBook.Builder(10);
+        try (GameArchive.Reader reader = new GameArchive.Reader(archive)) {
+            builder.addArchive(reader);
+        }
+        Path path = Files.createTempFile("checkers", ".book");
+        assertEquals(builder.write(path, 1), game.length);
+
+        try (OpeningBook book = new OpeningBook(path)) {
+            CheckersModel cm = new CheckersModel();
+            for (int move : game) {
+                assertEquals(book.lookup(cm), move);
+                cm.makeMove(move);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelSearchTest {
+
+    @Test
+    public void testSingleThreadMatchesSearchEngine() {
+        CheckersModel cm = new CheckersModel();
+        SearchResult expected = new SearchEngine(6, 1000000, new TranspositionTable(4)).search(cm);
+
+        ParallelSearch search = new ParallelSearch(1, 6, 1000000, new TranspositionTable(4));
+        SearchResult result = search.search(cm);
+        search.shutdown();
+
+        assertEquals(result.getMove(), expected.getMove());
+        assertEquals(result.getScore(), expected.getScore());
+        assertEquals(result.getNodes(), expected.getNodes());
+    }
+
+    @Test
+    public void testThreadsFindWinningCapture() {
+        CheckersModel cm = new CheckersModel();
+
+        int[][] board = {{0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 1, 0, 0, 0},
+                         {0, 0, 0, 2, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0}};
+
+        cm.setBoard(board);
+        ParallelSearch search = new ParallelSearch(4, 6, 1000000, new TranspositionTable(4));
+        SearchResult result = search.search(cm);
+        search.shutdown();
+
+        assertEquals(CheckersModel.moveJumps(result.getMove()), 1);
+        assertTrue(result.getScore() >= SearchEngine.WIN_SCORE - 10);
+
+        // the workers searched copies, so the model is unchanged
+        assertTrue(cm.getCurrentPlayer());
+        assertEquals(cm.getPiece(6, 3), CheckersModel.RED);
+    }
+}
@@ -0,0 +1,115 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PdnTest {
+
+    @Test
+    public void testSquareNumbers() {
+        assertEquals(Pdn.toSquare(1), 1);
+        assertEquals(Pdn.toSquare(5), 8);
+        assertEquals(Pdn.toSquare(32), 62);
+        for (int n = 1; n <= 32; n++) {
+            assertEquals(Pdn.toNumber(Pdn.toSquare(n)), n);
+        }
+    }
+
+    @Test
+    public void testWrittenGameReadsBack() throws IOException {
+        // forty moves of the last legal move each time, which includes jumps
+        CheckersModel cm = new CheckersModel();
+        int[] moves = new int[CheckersModel.MAX_MOVES];
+        for (int i = 0; i < 40 && cm.checkWinner() == 0; i++) {
+            cm.makeMove(moves[cm.generateMoves(moves) - 1]);
+        }
+        long hash = cm.getHash();
+        int[] history = cm.getMoveHistory();
+        Position position = cm.getPosition();
+
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("Event", "Test \"quoted\"");
+        StringWriter text = new StringWriter();
+        new Pdn.Writer(text).writeGame(cm, tags);
+        assertEquals(cm.getHash(), hash);
+        assertArrayEquals(cm.getMoveHistory(), history);
+        // nothing was played on the model, so nothing new was published
+        assertSame(cm.getPosition(), position);
+
+        Pdn.Reader reader = new Pdn.Reader(new StringReader(text.toString()));
+        Pdn.Game game = reader.next();
+        assertNotNull(game);
+        assertNull(reader.next());
+        assertEquals(game.getTag("Event"), "Test \"quoted\"");
+        assertNull(game.getTag("FEN"));
+        assertArrayEquals(game.getMoves(), history);
+
+        CheckersModel replayed = new CheckersModel();
+        game.replay(replayed);
+        assertEquals(replayed.getHash(), hash);
+    }
+
+    @Test
+    public void testWritingLeavesTheResultUnset() throws IOException {
+        // red to move with no moves left: a black win that nothing has noticed yet
+        CheckersModel cm = new CheckersModel();
+        cm.setPosition(1L << Pdn.toSquare(1), 1L << Pdn.toSquare(5), 1L << Pdn.toSquare(1),
+                false, -1);
+        StringWriter text = new StringWriter();
+        new Pdn.Writer(text).writeGame(cm, new LinkedHashMap<>());
+        assertFalse(cm.getIsGameOver());
+        assertEquals(new Pdn.Reader(new StringReader(text.toString())).next().getResult(), "1-0");
+
+        // a jump still in progress has no complete last move to write
+        cm.setPosition(1L << 1 * 8 + 0, 1L << 2 * 8 + 1 | 1L << 4 * 8 + 3, 0, true, -1);
+        cm.moveOrJump(1, 0, 3, 2);
+        assertTrue(cm.getIsJumpAgain());
+        boolean refused = false;
+        try {
+            new Pdn.Writer(new StringWriter()).writeGame(cm, new LinkedHashMap<>());
+        } catch (IllegalStateException e) {
+            refused = true;
+        }
+        assertTrue(refused);
+    }
+
+    @Test
+    public void testReaderSkipsCommentsAndBadGames() throws IOException {
+        String text = "[Event \"first\"]\n"
+                + "1. 11-16 {a comment} 24-20 (2. 9-13 $1) 2. 10-15 20x11 1-0\n"
+                + "\n"
+                + "[Event \"illegal\"]\n"
+                + "1. 9-18 *\n"
+                + "\n"
+                + "[Event \"from a position\"]\n"
+                + "[FEN \"W:WK14:B1,K9\"]\n"
+                + "1... 14x5 ; the king takes the king\n"
+                + "0-1\n";
+        Pdn.Reader reader = new Pdn.Reader(new StringReader(text));
+        List<Pdn.Game> games = new ArrayList<>();
+        assertEquals(reader.readAll(games::add), 2L);
+        assertEquals(reader.getSkippedGames(), 1L);
+
+        Pdn.Game first = games.get(0);
+        assertEquals(first.getTag("Event"), "first");
+        assertEquals(first.getResult(), "1-0");
+        assertEquals(first.getLength(), 4);
+        assertEquals(Pdn.moveToString(first.getMoves()[3]), "20x11");
+
+        // a jump written with only its ends is found among the legal moves
+        Pdn.Game second = games.get(1);
+        assertEquals(second.getTag("Event"), "from a position");
+        assertEquals(second.getLength(), 1);
+        CheckersModel cm = new CheckersModel();
+        second.replay(cm);
+        assertEquals(cm.getPieceCount(CheckersModel.BLACK_KING), 0);
+        assertEquals(cm.getPieceCount(CheckersModel.BLACK), 1);
+    }
+}
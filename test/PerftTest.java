@@ -0,0 +1,70 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PerftTest {
+
+    // captures are optional in this game, so from depth 3 on these are larger
+    // than the usual English draughts perft numbers
+    @Test
+    public void testPerftFromStart() {
+        CheckersModel cm = new CheckersModel();
+        assertEquals(Perft.perft(cm, 1), 7L);
+        assertEquals(Perft.perft(cm, 2), 49L);
+        assertEquals(Perft.perft(cm, 3), 379L);
+        assertEquals(Perft.perft(cm, 4), 2872L);
+        assertEquals(Perft.perft(cm, 5), 23582L);
+        assertEquals(Perft.perft(cm, 6, ForkJoinPool.commonPool()), 189143L);
+    }
+
+    @Test
+    public void testDivideAddsUpToPerft() {
+        CheckersModel cm = new CheckersModel();
+        Map<String, Long> divide = Perft.divide(cm, 4, ForkJoinPool.commonPool());
+        assertEquals(divide.size(), 7);
+        assertEquals(divide.get("2,1-3,0"), Long.valueOf(418));
+
+        long total = 0;
+        for (long nodes : divide.values()) {
+            total += nodes;
+        }
+        assertEquals(total, 2872L);
+
+        // at depth 1 every move counts as one position; depth 0 has no moves to divide
+        for (long nodes : Perft.divide(cm, 1, ForkJoinPool.commonPool()).values()) {
+            assertEquals(nodes, 1L);
+        }
+        boolean rejected = false;
+        try {
+            Perft.divide(cm, 0, ForkJoinPool.commonPool());
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        assertTrue(rejected);
+    }
+
+    @Test
+    public void testPerftWithJumpsAndPromotion() {
+        CheckersModel cm = new CheckersModel();
+
+        int[][] board = {{0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 2, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 2, 0, 2, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 2, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 3, 0, 0}};
+
+        cm.setBoard(board);
+        long sequential = Perft.perft(cm, 5);
+        assertEquals(Perft.perft(cm, 5, ForkJoinPool.commonPool()), sequential);
+
+        // the king has one simple move and two jump sequences (x3,1 and x3,5x1,3)
+        assertEquals(Perft.perft(cm, 1), 3L);
+        assertTrue(cm.getCurrentPlayer());
+    }
+}
@@ -0,0 +1,103 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchEngineTest {
+
+    @Test
+    public void testTakesFreePiece() {
+        CheckersModel cm = new CheckersModel();
+
+        int[][] board = {{0, 1, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 1, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 2, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 2, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0}};
+
+        cm.setBoard(board);
+        SearchResult result = new SearchEngine(6, 1000000).search(cm);
+        assertEquals(CheckersModel.moveFrom(result.getMove()), 2 * 8 + 3);
+        assertEquals(CheckersModel.moveTo(result.getMove()), 4 * 8 + 5);
+        assertTrue(result.getScore() > 0);
+    }
+
+    @Test
+    public void testFindsWinByCapturingLastPiece() {
+        CheckersModel cm = new CheckersModel();
+
+        int[][] board = {{0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 1, 0, 0, 0},
+                         {0, 0, 0, 2, 0, 0, 0, 0},
+                         {0, 0, 0, 0, 0, 0, 0, 0}};
+
+        cm.setBoard(board);
+        SearchResult result = new SearchEngine(4, 1000000).search(cm);
+        assertEquals(CheckersModel.moveJumps(result.getMove()), 1);
+        assertTrue(result.getScore() >= SearchEngine.WIN_SCORE - 10);
+    }
+
+    // a tablebase win that takes longer than the quiet moves left is not a win
+    @Test
+    public void testTablebaseWinsRespectDrawMoves() throws IOException {
+        Path directory = Files.createTempDirectory("tablebase");
+        new TablebaseGenerator().generate(directory, 3);
+        Tablebase tablebase = new Tablebase(directory);
+
+        // two black kings against a red king, which black wins but not at once
+        CheckersModel cm = new CheckersModel();
+        long black = 1L << 7 * 8 + 0 | 1L << 7 * 8 + 2;
+        long red = 1L << 0 * 8 + 7;
+        cm.setPosition(black, red, black | red, true, -1);
+        int entry = tablebase.probe(cm);
+        assertEquals(Tablebase.result(entry), Tablebase.WIN);
+        assertTrue(Tablebase.distance(entry) > 4);
+
+        SearchEngine engine = new SearchEngine(2, 1000000);
+        engine.setTablebase(tablebase);
+        assertTrue(engine.search(cm).getScore() > SearchEngine.WIN_SCORE / 2 - 128);
+        cm.setDrawMoves(4);
+        engine.getTable().clear();
+        assertTrue(engine.search(cm).getScore() < SearchEngine.WIN_SCORE / 4);
+    }
+
+    @Test
+    public void testSearchLeavesModelUnchanged() {
+        CheckersModel cm = new CheckersModel();
+        cm.moveOrJump(2, 1, 3, 2);
+
+        SearchResult result = new SearchEngine(5, 1000000).search(cm);
+        assertFalse(cm.getCurrentPlayer());
+        assertEquals(cm.getPiece(3, 2), CheckersModel.BLACK);
+        assertEquals(cm.getPiece(2, 1), CheckersModel.EMPTY);
+        assertEquals(result.getDepth(), 5);
+
+        // the move found is one of the legal moves
+        int[] moves = new int[CheckersModel.MAX_MOVES];
+        int count = cm.generateMoves(moves);
+        boolean found = false;
+        for (int i = 0; i < count; i++) {
+            found = found || moves[i] == result.getMove();
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void testStopsAtNodeLimit() {
+        CheckersModel cm = new CheckersModel();
+        SearchResult result = new SearchEngine(30, 500).search(cm);
+        assertTrue(result.getNodes() <= 500);
+        assertTrue(result.getDepth() < 30);
+        assertTrue(result.getMove() != -1);
+    }
+}
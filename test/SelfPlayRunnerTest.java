@@ -0,0 +1,89 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SelfPlayRunnerTest {
+
+    @Test
+    public void testPlaysEveryGameAndStreamsResults() throws InterruptedException {
+        SelfPlayRunner runner = new SelfPlayRunner(3, SelfPlayRunner::firstMovePolicy,
+                SelfPlayRunner::randomPolicy, 150, 2, 42, null);
+        Map<Integer, SelfPlayRunner.GameResult> results = new ConcurrentHashMap<>();
+        runner.run(20, result -> results.put(result.getGame(), result));
+
+        assertEquals(results.size(), 20);
+        for (SelfPlayRunner.GameResult result : results.values()) {
+            assertTrue(result.getLength() <= 150);
+            assertTrue(result.getWinner() >= 0 && result.getWinner() <= CheckersModel.DRAW);
+            if (result.getLength() < 150) {
+                assertTrue(result.getWinner() != 0);
+            }
+        }
+    }
+
+    @Test
+    public void testFailureIsThrownFromRun() throws InterruptedException {
+        SelfPlayRunner runner = new SelfPlayRunner(2, SelfPlayRunner::randomPolicy,
+                SelfPlayRunner::randomPolicy, 50, 2, 1, null);
+        AtomicInteger played = new AtomicInteger();
+        IllegalStateException failure = new IllegalStateException("sink failed");
+        IllegalStateException thrown = null;
+        try {
+            runner.run(1000, result -> {
+                if (played.incrementAndGet() == 3) {
+                    throw failure;
+                }
+            });
+        } catch (IllegalStateException e) {
+            thrown = e;
+        }
+        assertSame(thrown, failure);
+        // games stop being started once one has failed
+        assertTrue(played.get() < 1000);
+    }
+
+    @Test
+    public void testGamesAreReproducible() {
+        SelfPlayRunner runner = new SelfPlayRunner(1, SelfPlayRunner::randomPolicy,
+                () -> SelfPlayRunner.enginePolicy(3, 100000, 1), 100, 4, 7, null);
+        SelfPlayRunner.GameResult first = runner.playGame(5);
+        SelfPlayRunner.GameResult second = runner.playGame(5);
+        assertEquals(first.toString(), second.toString());
+
+        // an engine's table from earlier games on the thread changes nothing
+        SelfPlayRunner engines = new SelfPlayRunner(1,
+                () -> SelfPlayRunner.enginePolicy(8, 3000, 1),
+                () -> SelfPlayRunner.enginePolicy(8, 3000, 1), 100, 2, 7, null);
+        String fresh = engines.playGame(5).toString();
+        assertEquals(engines.playGame(5).toString(), fresh);
+
+        // replaying the moves reaches a finished game (or the move limit)
+        CheckersModel cm = new CheckersModel();
+        for (int move : first.getMoves()) {
+            cm.makeMove(move);
+        }
+        assertEquals(cm.checkWinner(), first.getWinner());
+    }
+
+    // a run on several threads plays the same games as one thread playing them in turn
+    @Test
+    public void testRunMatchesGamesPlayedOneByOne() throws InterruptedException {
+        SelfPlayRunner runner = new SelfPlayRunner(2,
+                () -> SelfPlayRunner.enginePolicy(6, 2000, 1),
+                () -> SelfPlayRunner.enginePolicy(6, 2000, 1), 60, 2, 11, null);
+        Map<Integer, SelfPlayRunner.GameResult> results = new ConcurrentHashMap<>();
+        runner.run(12, result -> results.put(result.getGame(), result));
+
+        assertEquals(results.size(), 12);
+        SelfPlayRunner single = new SelfPlayRunner(1,
+                () -> SelfPlayRunner.enginePolicy(6, 2000, 1),
+                () -> SelfPlayRunner.enginePolicy(6, 2000, 1), 60, 2, 11, null);
+        for (int game = 11; game >= 0; game--) {
+            assertEquals(results.get(game).toString(), single.playGame(game).toString());
+        }
+    }
+}
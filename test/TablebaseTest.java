@@ -0,0 +1,104 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TablebaseTest {
+
+    private static Tablebase solveUpTo(int pieces) throws IOException {
+        Path directory = Files.createTempDirectory("tablebase");
+        new TablebaseGenerator().generate(directory, pieces);
+        return new Tablebase(directory);
+    }
+
+    // the entry for the position after a move, counting a player with no pieces left as lost
+    private static int childEntry(Tablebase tablebase, CheckersModel cm) {
+        boolean black = cm.getCurrentPlayer();
+        int left = black
+                ? cm.getPieceCount(CheckersModel.BLACK) + cm.getPieceCount(CheckersModel.BLACK_KING)
+                : cm.getPieceCount(CheckersModel.RED) + cm.getPieceCount(CheckersModel.RED_KING);
+        if (left == 0) {
+            return Tablebase.LOSS << 14;
+        }
+        return tablebase.probe(cm);
+    }
+
+    @Test
+    public void testPlayerWithNoMovesHasLost() throws IOException {
+        Tablebase tablebase = solveUpTo(2);
+        CheckersModel cm = new CheckersModel();
+        // the red man at (1, 0) is blocked by the black king and cannot jump it
+        long black = 1L << 1;
+        long red = 1L << 8;
+        cm.setPosition(black, red, black, false, -1);
+        int entry = tablebase.probe(cm);
+        assertEquals(Tablebase.result(entry), Tablebase.LOSS);
+        assertEquals(Tablebase.distance(entry), 0);
+
+        cm.reset();
+        assertEquals(tablebase.probe(cm), Tablebase.NOT_FOUND);
+    }
+
+    @Test
+    public void testEveryEntryAgreesWithItsMoves() throws IOException {
+        Tablebase tablebase = solveUpTo(3);
+        CheckersModel cm = new CheckersModel();
+        int[] moves = new int[CheckersModel.MAX_MOVES];
+        int wins = 0;
+        int losses = 0;
+
+        // a black man and a black king against a red king, every placement and both players to move
+        for (int man = 0; man < 64; man++) {
+            for (int king = 0; king < 64; king++) {
+                for (int redKing = 0; redKing < 64; redKing++) {
+                    long black = 1L << man | 1L << king;
+                    long red = 1L << redKing;
+                    long kings = 1L << king | red;
+                    if (Long.bitCount(black | red) != 3 || man / 8 == 7
+                            || !Tablebase.isIndexable(black, red, kings)) {
+                        continue;
+                    }
+                    for (int side = 0; side < 2; side++) {
+                        cm.setPosition(black, red, kings, side == 0, -1);
+                        int entry = tablebase.probe(cm);
+                        assertNotEquals(entry, Tablebase.NOT_FOUND);
+                        int count = cm.generateMoves(moves);
+
+                        int bestWin = -1;
+                        int longestLoss = -1;
+                        boolean allLose = true;
+                        for (int i = 0; i < count; i++) {
+                            cm.makeMove(moves[i]);
+                            int child = childEntry(tablebase, cm);
+                            cm.unmakeMove(moves[i]);
+                            int d = Tablebase.distance(child);
+                            if (Tablebase.result(child) == Tablebase.LOSS) {
+                                bestWin = bestWin < 0 ? d + 1 : Math.min(bestWin, d + 1);
+                            }
+                            if (Tablebase.result(child) == Tablebase.WIN) {
+                                longestLoss = Math.max(longestLoss, d + 1);
+                            } else {
+                                allLose = false;
+                            }
+                        }
+
+                        if (bestWin >= 0) {
+                            wins++;
+                            assertEquals(entry, Tablebase.WIN << 14 | bestWin);
+                        } else if (allLose) {
+                            losses++;
+                            assertEquals(entry, Tablebase.LOSS << 14 | Math.max(longestLoss, 0));
+                        } else {
+                            assertEquals(entry, Tablebase.DRAW);
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(wins > 0);
+        assertTrue(losses > 0);
+    }
+}
@@ -0,0 +1,51 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TranspositionTableTest {
+
+    @Test
+    public void testStoreAndProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        assertEquals(table.getCapacity(), 65536);
+
+        table.store(12345L, 0x7FFF1234, -99999, 12, TranspositionTable.LOWER_BOUND);
+        long entry = table.probe(12345L);
+        assertEquals(TranspositionTable.entryMove(entry), 0x7FFF1234);
+        assertEquals(TranspositionTable.entryScore(entry), -99999);
+        assertEquals(TranspositionTable.entryDepth(entry), 12);
+        assertEquals(TranspositionTable.entryBound(entry), TranspositionTable.LOWER_BOUND);
+
+        assertEquals(table.probe(54321L), 0L);
+    }
+
+    @Test
+    public void testReplacesShallowestEntry() {
+        TranspositionTable table = new TranspositionTable(1);
+        long slots = table.getCapacity();
+
+        // three positions that share a pair of slots
+        table.store(4L, 1, 0, 8, TranspositionTable.EXACT);
+        table.store(4L + slots, 2, 0, 3, TranspositionTable.EXACT);
+        table.store(4L + 2 * slots, 3, 0, 5, TranspositionTable.EXACT);
+
+        assertEquals(TranspositionTable.entryMove(table.probe(4L)), 1);
+        assertEquals(table.probe(4L + slots), 0L);
+        assertEquals(TranspositionTable.entryMove(table.probe(4L + 2 * slots)), 3);
+    }
+
+    @Test
+    public void testReplacesEntriesFromOlderSearches() {
+        TranspositionTable table = new TranspositionTable(1);
+        long slots = table.getCapacity();
+
+        table.store(4L, 1, 0, 20, TranspositionTable.EXACT);
+        table.newSearch();
+        table.store(4L + slots, 2, 0, 2, TranspositionTable.EXACT);
+        table.store(4L + 2 * slots, 3, 0, 1, TranspositionTable.EXACT);
+
+        assertEquals(table.probe(4L), 0L);
+        assertEquals(TranspositionTable.entryMove(table.probe(4L + slots)), 2);
+        assertEquals(TranspositionTable.entryMove(table.probe(4L + 2 * slots)), 3);
+    }
+}